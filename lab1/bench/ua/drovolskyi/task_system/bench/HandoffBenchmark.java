@@ -0,0 +1,100 @@
+package ua.drovolskyi.task_system.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ua.drovolskyi.task_system.Combiner;
+import ua.drovolskyi.task_system.CompletionEngine;
+import ua.drovolskyi.task_system.EvaluationGraph;
+import ua.drovolskyi.task_system.EvaluationResult;
+import ua.drovolskyi.task_system.FutureCompletionEngine;
+import ua.drovolskyi.task_system.Manager;
+import ua.drovolskyi.task_system.MultiplexedCompletionEngine;
+import ua.drovolskyi.task_system.PipeCompletionEngine;
+import ua.drovolskyi.task_system.RingBufferCompletionEngine;
+import ua.drovolskyi.task_system.TaskExecutors;
+
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/*
+    End-to-end cost of one evaluation (tasks are started, results are handed over to manager,
+    graph is combined) for different transports of results and numbers of concurrent tasks.
+    Functions are stubs, that return result immediately, so only overhead of task system is measured.
+    Tasks are executed by fixed pool (one thread per processor), as in batch mode.
+
+    mvn -P bench package && java -jar target/benchmarks.jar HandoffBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HandoffBenchmark {
+    private static final int X = 3;
+
+    @Param({"2", "64", "4096"})
+    public int tasks;
+
+    @Param({"PIPE_PER_TASK", "MULTIPLEXED_PIPE", "BLOCKING_QUEUE", "SYNCHRONOUS_QUEUE",
+            "LOCK_FREE_QUEUE", "COMPLETABLE_FUTURE", "RING_BUFFER_SPIN", "RING_BUFFER_YIELD", "RING_BUFFER_PARK"})
+    public Transport transport;
+
+    private ExecutorService workers;
+    private EvaluationGraph graph;
+
+    @Setup(Level.Trial)
+    public void setUp(){
+        workers = TaskExecutors.fixedPool(Runtime.getRuntime().availableProcessors());
+
+        graph = new EvaluationGraph();
+        EvaluationGraph.Node[] components = new EvaluationGraph.Node[tasks];
+        for (int i = 0; i < tasks; i++){
+            double value = i;
+            components[i] = graph.component("stub" + i, x -> Optional.of(Optional.of(value)));
+        }
+        graph.setRoot(graph.combine(Combiner.SUM, components));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown(){
+        workers.shutdownNow();
+    }
+
+    @Benchmark
+    public double evaluate(){
+        EvaluationResult result = new Manager(graph, workers, transport.engineFactory).evaluate(X, 0);
+        return result.getValue();
+    }
+
+    public enum Transport {
+        PIPE_PER_TASK(PipeCompletionEngine::new),
+        MULTIPLEXED_PIPE(MultiplexedCompletionEngine::new),
+        BLOCKING_QUEUE(FutureCompletionEngine::new),
+        SYNCHRONOUS_QUEUE(HandoffEngines.SynchronousQueueEngine::new),
+        LOCK_FREE_QUEUE(HandoffEngines.LockFreeQueueEngine::new),
+        COMPLETABLE_FUTURE(HandoffEngines.CompletableFutureEngine::new),
+        RING_BUFFER_SPIN(() -> new RingBufferCompletionEngine(RingBufferCompletionEngine.WaitStrategy.BUSY_SPIN)),
+        RING_BUFFER_YIELD(() -> new RingBufferCompletionEngine(RingBufferCompletionEngine.WaitStrategy.YIELD)),
+        RING_BUFFER_PARK(() -> new RingBufferCompletionEngine(RingBufferCompletionEngine.WaitStrategy.PARK));
+
+        private final CompletionEngine.Factory engineFactory;
+
+        Transport(CompletionEngine.Factory engineFactory){
+            // steady state is measured: engine is reused by next evaluations, as Manager does by default
+            this.engineFactory = CompletionEngine.Factory.reusing(engineFactory);
+        }
+    }
+}
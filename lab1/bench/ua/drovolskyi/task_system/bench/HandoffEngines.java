@@ -0,0 +1,204 @@
+package ua.drovolskyi.task_system.bench;
+
+import ua.drovolskyi.task_system.CompletionEngine;
+import ua.drovolskyi.task_system.DirectResultSink;
+import ua.drovolskyi.task_system.ResultSink;
+import ua.drovolskyi.task_system.TaskInfo;
+import ua.drovolskyi.task_system.TrialFunctions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+    Result handoffs, that are compared with transports of task system in HandoffBenchmark.
+    They implement only what benchmark needs (functions never fail, computations are never cancelled)
+ */
+class HandoffEngines {
+
+    // task blocks until manager takes its result, there is no buffer between them
+    static class SynchronousQueueEngine implements CompletionEngine {
+        private static final Completion WAKEUP = new Completion(null, 0, 0);
+        private final SynchronousQueue<Completion> handoff = new SynchronousQueue<>();
+        private volatile boolean wakeupRequested = false;
+
+        @Override
+        public ResultSink register(TaskInfo taskInfo) {
+            return new ResultSink() {
+                @Override
+                public void sendResult(double result) {
+                    put(new Completion(taskInfo, SUCCESS, result));
+                }
+
+                @Override
+                public void sendFailure(int failureId) {
+                    put(new Completion(taskInfo, failureId, 0));
+                }
+            };
+        }
+
+        private void put(Completion completion){
+            try {
+                handoff.put(completion);
+            } catch (InterruptedException e) {
+                throw TrialFunctions.cancelled();
+            }
+        }
+
+        @Override
+        public int await(long timeoutMillis) {
+            if (wakeupRequested){
+                wakeupRequested = false;
+                return 0;
+            }
+            Completion completion;
+            try {
+                completion = timeoutMillis == 0 ?
+                        handoff.take() : handoff.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return 0;
+            }
+            int finishedTasks = 0;
+            while (completion != null){
+                if (completion != WAKEUP){
+                    completion.taskInfo.finish(completion.returningCode, completion.result);
+                    finishedTasks++;
+                }
+                completion = handoff.poll();
+            }
+            return finishedTasks;
+        }
+
+        @Override
+        public void wakeup() {
+            wakeupRequested = true;
+            handoff.offer(WAKEUP);
+        }
+
+        @Override
+        public void close() {}
+    }
+
+    // lock-free queue, waiting thread is parked and unparked by tasks
+    static class LockFreeQueueEngine implements CompletionEngine {
+        private final ConcurrentLinkedQueue<Completion> completions = new ConcurrentLinkedQueue<>();
+        private volatile Thread waiter;
+
+        @Override
+        public ResultSink register(TaskInfo taskInfo) {
+            return new ResultSink() {
+                @Override
+                public void sendResult(double result) {
+                    completions.add(new Completion(taskInfo, SUCCESS, result));
+                    LockSupport.unpark(waiter);
+                }
+
+                @Override
+                public void sendFailure(int failureId) {
+                    completions.add(new Completion(taskInfo, failureId, 0));
+                    LockSupport.unpark(waiter);
+                }
+            };
+        }
+
+        @Override
+        public int await(long timeoutMillis) {
+            waiter = Thread.currentThread();
+            Completion completion = completions.poll();
+            if (completion == null){
+                // if task adds result after poll(), its unpark() makes park() return immediately
+                if (timeoutMillis == 0){
+                    LockSupport.park(this);
+                }
+                else{
+                    LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+                }
+                completion = completions.poll();
+            }
+
+            int finishedTasks = 0;
+            while (completion != null){
+                completion.taskInfo.finish(completion.returningCode, completion.result);
+                finishedTasks++;
+                completion = completions.poll();
+            }
+            return finishedTasks;
+        }
+
+        @Override
+        public void wakeup() {
+            LockSupport.unpark(waiter);
+        }
+
+        @Override
+        public void close() {
+            completions.clear();
+        }
+    }
+
+    /*
+        Tasks complete futures of their TaskInfos right in their threads (see DirectResultSink),
+        manager just waits for future. Functions never fail, so waiting for all tasks is the same
+        as waiting for result of graph
+     */
+    static class CompletableFutureEngine implements CompletionEngine {
+        private final List<CompletableFuture<TaskInfo>> completions = new ArrayList<>();
+        private final CompletableFuture<Void> wakeupSignal = new CompletableFuture<>();
+        private CompletableFuture<Object> allFinished;
+
+        @Override
+        public ResultSink register(TaskInfo taskInfo) {
+            completions.add(taskInfo.getCompletion());
+            return new DirectResultSink(taskInfo);
+        }
+
+        @Override
+        public int await(long timeoutMillis) {
+            if (allFinished == null){
+                allFinished = CompletableFuture.anyOf(
+                        CompletableFuture.allOf(completions.toArray(new CompletableFuture[0])), wakeupSignal);
+            }
+            try {
+                if (timeoutMillis == 0){
+                    allFinished.get();
+                }
+                else{
+                    allFinished.get(timeoutMillis, TimeUnit.MILLISECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return 0;
+            } catch (ExecutionException | TimeoutException e) {
+                return 0;
+            }
+            return completions.size();
+        }
+
+        @Override
+        public void wakeup() {
+            wakeupSignal.complete(null);
+        }
+
+        @Override
+        public void close() {}
+    }
+
+    private static class Completion {
+        private final TaskInfo taskInfo;
+        private final int returningCode;
+        private final double result;
+
+        private Completion(TaskInfo taskInfo, int returningCode, double result){
+            this.taskInfo = taskInfo;
+            this.returningCode = returningCode;
+            this.result = result;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package ua.drovolskyi.task_system;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/*
+    Adaptive concurrency limit in front of executor: at most limit tasks are executed at once, next ones wait
+    in queue. If shedding is enabled (it is needed, if tasks arrive independently of how fast they are computed,
+    like requests of server), queue holds at most QUEUED_PER_LIMIT * limit tasks (and not more than maxQueued),
+    so time of waiting in it stays close to a few latencies of task, and next tasks are rejected
+    (RejectedExecutionException): overloaded system sheds work instead of making all evaluations slow.
+    Otherwise queue is unbounded (caller must limit number of tasks by itself, like BatchEvaluator does).
+
+    Limit is found by AIMD from observed latency of tasks (time of all attempts of task).
+    Short-term average latency (over last tens of tasks) is compared with long-term one (over hundreds of tasks),
+    not with some fixed value, so tasks of functions with different latencies can share one limit:
+     - if short-term latency is more than LATENCY_TOLERANCE times greater than long-term one, tasks fight
+       for resources (e.g. CPU), and limit is multiplied by BACKOFF_RATIO (not more often than once
+       per limit tasks, so one burst of slow tasks doesn't collapse it)
+     - if short-term latency is lower than long-term one (adding tasks doesn't make them slower),
+       and limit is really used, it is increased by 1 per limit tasks
+     - otherwise limit is kept
+    So thread count of executor is only the upper bound of limit, and it needn't be tuned for every machine
+ */
+public class AdaptiveExecutor extends AbstractExecutorService implements AdaptiveExecutorMXBean {
+    private static final double LATENCY_TOLERANCE = 1.5;
+    private static final double BACKOFF_RATIO = 0.9;
+    private static final double SHORT_TERM_WEIGHT = 0.1; // weight of new sample in exponential moving average
+    private static final double LONG_TERM_WEIGHT = 0.005;
+    private static final int QUEUED_PER_LIMIT = 2;
+
+    private final ExecutorService executor;
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxQueued; // -1 means that queue is unbounded and tasks aren't rejected
+    private final ArrayDeque<Runnable> queue = new ArrayDeque<>();
+
+    // fields below are guarded by this
+    private double limit;
+    private int inFlight = 0;
+    private double shortTermLatency = -1; // -1 until first sample
+    private double longTermLatency = -1;
+    private int tasksSinceDecrease = 0;
+    private long completed = 0;
+    private long rejected = 0;
+    private boolean shutdown = false;
+
+    // maxQueued is -1 if shedding isn't needed
+    public AdaptiveExecutor(ExecutorService executor, int initialLimit, int minLimit, int maxLimit, int maxQueued){
+        if (minLimit <= 0 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit){
+            throw new IllegalArgumentException("limits must satisfy 0 < minLimit <= initialLimit <= maxLimit");
+        }
+        if (maxQueued < -1){
+            throw new IllegalArgumentException("maxQueued must be >= 0 or -1");
+        }
+        this.executor = executor;
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.maxQueued = maxQueued;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        synchronized (this){
+            if (shutdown){
+                throw new RejectedExecutionException("Executor is shut down");
+            }
+            if (inFlight >= (int)limit && maxQueued == -1){
+                queue.add(task);
+                return;
+            }
+            if (inFlight >= (int)limit){
+                int maxQueuedNow = (int)Math.min(QUEUED_PER_LIMIT * (long)limit, maxQueued);
+                if (queue.size() >= maxQueuedNow){
+                    // tasks, that are cancelled while waiting (e.g. their evaluation timed out), free their places
+                    queue.removeIf(queuedTask -> queuedTask instanceof Future && ((Future<?>)queuedTask).isCancelled());
+                }
+                if (queue.size() >= maxQueuedNow){
+                    rejected++;
+                    throw new RejectedExecutionException("Concurrency limit " + (int)limit + " is reached " +
+                            "and " + queue.size() + " tasks are queued");
+                }
+                queue.add(task);
+                return;
+            }
+            inFlight++;
+        }
+        dispatch(task);
+    }
+
+    private void dispatch(Runnable task){
+        try {
+            executor.execute(() -> {
+                long startTime = System.nanoTime();
+                try {
+                    task.run();
+                } finally {
+                    // latency of cancelled task says nothing about load (it can be stopped at once)
+                    boolean cancelled = task instanceof Future && ((Future<?>)task).isCancelled();
+                    finished(cancelled ? -1 : System.nanoTime() - startTime);
+                }
+            });
+        } catch (RejectedExecutionException e){ // underlying executor is shut down
+            synchronized (this){
+                inFlight--;
+            }
+            throw e;
+        }
+    }
+
+    // latencyNanos is -1 if task is cancelled
+    private void finished(long latencyNanos){
+        List<Runnable> next = new ArrayList<>();
+        synchronized (this){
+            inFlight--;
+            completed++;
+            if (latencyNanos >= 0){
+                adjustLimit(latencyNanos);
+            }
+            while (inFlight < (int)limit && !queue.isEmpty()){
+                inFlight++;
+                next.add(queue.poll());
+            }
+            if (shutdown && queue.isEmpty() && next.isEmpty()){
+                executor.shutdown();
+            }
+        }
+        for (Runnable task : next){
+            try {
+                dispatch(task);
+            } catch (RejectedExecutionException e){
+                // executor is shut down now, so task won't be executed anyway
+            }
+        }
+    }
+
+    // called under lock
+    private void adjustLimit(long latencyNanos){
+        if (shortTermLatency < 0){
+            shortTermLatency = latencyNanos;
+            longTermLatency = latencyNanos;
+        }
+        shortTermLatency += SHORT_TERM_WEIGHT * (latencyNanos - shortTermLatency);
+        longTermLatency += LONG_TERM_WEIGHT * (latencyNanos - longTermLatency);
+
+        tasksSinceDecrease++;
+        if (shortTermLatency > LATENCY_TOLERANCE * longTermLatency){
+            if (tasksSinceDecrease >= limit){
+                limit = Math.max(limit * BACKOFF_RATIO, minLimit);
+                tasksSinceDecrease = 0;
+            }
+        }
+        else if (shortTermLatency <= longTermLatency && 2 * (inFlight + 1) >= limit){
+            // limit is used (this task is already not counted)
+            limit = Math.min(limit + 1 / limit, maxLimit);
+        }
+    }
+
+    @Override
+    public synchronized int getLimit(){
+        return (int)limit;
+    }
+
+    @Override
+    public synchronized int getInFlight(){
+        return inFlight;
+    }
+
+    @Override
+    public synchronized int getQueued(){
+        return queue.size();
+    }
+
+    @Override
+    public synchronized long getCompleted(){
+        return completed;
+    }
+
+    @Override
+    public synchronized long getRejected(){
+        return rejected;
+    }
+
+    // exposes limit, in-flight tasks and rejections through JMX
+    public void registerMBean(){
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+                    new ObjectName("ua.drovolskyi.task_system:type=AdaptiveExecutor"));
+        } catch (JMException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // queued tasks are still executed
+    @Override
+    public synchronized void shutdown() {
+        shutdown = true;
+        if (queue.isEmpty()){
+            executor.shutdown();
+        }
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        List<Runnable> notExecuted;
+        synchronized (this){
+            shutdown = true;
+            notExecuted = new ArrayList<>(queue);
+            queue.clear();
+        }
+        notExecuted.addAll(executor.shutdownNow());
+        return notExecuted;
+    }
+
+    @Override
+    public synchronized boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public synchronized boolean isTerminated() {
+        return shutdown && queue.isEmpty() && executor.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return executor.awaitTermination(timeout, unit);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "concurrency limit " + (int)limit + " (in flight " + inFlight + ", queued " + queue.size() +
+                ", completed " + completed + ", rejected " + rejected + ")";
+    }
+}
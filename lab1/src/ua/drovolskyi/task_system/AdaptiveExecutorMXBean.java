@@ -0,0 +1,14 @@
+package ua.drovolskyi.task_system;
+
+// state of adaptive concurrency limit, that is exposed through JMX (see AdaptiveExecutor)
+public interface AdaptiveExecutorMXBean {
+    int getLimit();
+
+    int getInFlight();
+
+    int getQueued();
+
+    long getCompleted();
+
+    long getRejected();
+}
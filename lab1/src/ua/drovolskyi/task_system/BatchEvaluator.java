@@ -0,0 +1,199 @@
+package ua.drovolskyi.task_system;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/*
+    Streaming mode: computes evaluation graph (f(x)+g(x) by default) for every x from input.
+    Tasks are executed by given executor (fixed set of worker threads or virtual threads), and number
+    of evaluations in flight is bounded, so memory usage doesn't depend on length of input.
+    Results are written in input order, or (if ordered == false) as soon as they are computed,
+    tagged with index of x in input
+ */
+public class BatchEvaluator {
+    private final EvaluationGraph graph;
+    private final ExecutorService workers;
+    private final boolean ordered;
+    private final InFlightLimit inFlight;
+    private int maxEvaluationsInFlight;
+    private boolean finishing = false; // limit can't be changed, when all permits are being returned
+
+    public BatchEvaluator(EvaluationGraph graph, ExecutorService workers,
+                          int maxEvaluationsInFlight, boolean ordered){
+        if (maxEvaluationsInFlight <= 0){
+            throw new IllegalArgumentException("maxEvaluationsInFlight must be > 0");
+        }
+        this.graph = graph;
+        this.workers = workers;
+        this.maxEvaluationsInFlight = maxEvaluationsInFlight;
+        this.ordered = ordered;
+        this.inFlight = new InFlightLimit(maxEvaluationsInFlight);
+    }
+
+    public synchronized int getMaxEvaluationsInFlight(){
+        return maxEvaluationsInFlight;
+    }
+
+    /*
+        Changes limit while evaluator is running (e.g. from ControlServer).
+        If limit is decreased, new evaluations aren't started until number of evaluations in flight drops below it
+     */
+    public synchronized void setMaxEvaluationsInFlight(int maxEvaluationsInFlight){
+        if (maxEvaluationsInFlight <= 0){
+            throw new IllegalArgumentException("maxEvaluationsInFlight must be > 0");
+        }
+        if (finishing){
+            throw new IllegalStateException("Evaluator is finishing");
+        }
+        int delta = maxEvaluationsInFlight - this.maxEvaluationsInFlight;
+        if (delta > 0){
+            inFlight.release(delta);
+        }
+        else{
+            inFlight.reducePermits(-delta);
+        }
+        this.maxEvaluationsInFlight = maxEvaluationsInFlight;
+    }
+
+    // returns number of evaluated x values
+    public long run(BufferedReader in, PrintStream out) throws IOException {
+        // in ordered mode results are printed by separate thread, that waits for evaluations one by one
+        LinkedBlockingQueue<Evaluation> pending = new LinkedBlockingQueue<>();
+        Thread writerThread = null;
+        if (ordered){
+            writerThread = new Thread(() -> {
+                try {
+                    while (true){
+                        Evaluation evaluation = pending.take();
+                        if (evaluation == Evaluation.END_OF_INPUT){
+                            break;
+                        }
+                        evaluation.finished.join();
+                        out.println(evaluation.formatResult());
+                        inFlight.release();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            writerThread.start();
+        }
+
+        long index = 0;
+        try {
+            String line;
+            while ((line = in.readLine()) != null){
+                for (String token : line.trim().split("\\s+")){
+                    if (token.isEmpty()){
+                        continue;
+                    }
+
+                    int x;
+                    try{
+                        x = Integer.parseInt(token);
+                    } catch (NumberFormatException e){
+                        System.err.println("Input must be integer value: " + token);
+                        continue;
+                    }
+
+                    inFlight.acquireUninterruptibly();
+                    Evaluation evaluation = start(index, x);
+                    index++;
+
+                    if (ordered){
+                        pending.add(evaluation);
+                    }
+                    else{
+                        evaluation.finished.thenRun(() -> {
+                            synchronized (out){
+                                out.println(evaluation.index + "\t" + evaluation.formatResult());
+                            }
+                            inFlight.release();
+                        });
+                    }
+                }
+            }
+        } finally {
+            if (ordered){
+                pending.add(Evaluation.END_OF_INPUT);
+                try {
+                    writerThread.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            else{
+                // all evaluations are finished when all permits are returned
+                int permits;
+                synchronized (this){
+                    finishing = true;
+                    permits = maxEvaluationsInFlight;
+                }
+                inFlight.acquireUninterruptibly(permits);
+            }
+            out.flush();
+        }
+        return index;
+    }
+
+    private Evaluation start(long index, int x){
+        return new Evaluation(index, x, graph.start(x, graph.createTaskInfos(), workers));
+    }
+
+    // semaphore, which number of permits can be decreased
+    private static class InFlightLimit extends Semaphore {
+        private static final long serialVersionUID = 1L;
+
+        private InFlightLimit(int permits){
+            super(permits);
+        }
+
+        @Override
+        protected void reducePermits(int reduction) {
+            super.reducePermits(reduction);
+        }
+    }
+
+    private static class Evaluation {
+        private static final Evaluation END_OF_INPUT = new Evaluation(-1, 0, null);
+
+        private final long index;
+        private final int x;
+        private final CompletableFuture<Double> result;
+        private final CompletableFuture<Void> finished;
+
+        private Evaluation(long index, int x, CompletableFuture<Double> result){
+            this.index = index;
+            this.x = x;
+            this.result = result;
+            this.finished = result == null ? null : result.handle((value, exception) -> null);
+        }
+
+        // must be called only after evaluation is finished
+        private String formatResult(){
+            if (result.isCancelled()){
+                return x + "\tcancelled";
+            }
+            ComponentFailedException failure;
+            try {
+                failure = EvaluationGraph.getComponentFailure(result);
+            } catch (CompletionException e){
+                if (e.getCause() instanceof RejectedExecutionException){
+                    return x + "\trejected: " + e.getCause().getMessage();
+                }
+                throw e;
+            }
+            if (failure == null){
+                return x + "\t" + result.join();
+            }
+            return x + "\tfailed: " + failure.getMessage();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package ua.drovolskyi.task_system;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/*
+    Memoizing wrapper for f(x) and g(x).
+    Successful results and hard fails are deterministic, so they are remembered in bounded LRU cache.
+    Soft fails aren't remembered, so next attempt computes function again.
+    If some x is already computing, concurrent callers wait for that computation instead of starting new one
+ */
+public class CachedFunction implements Function<Integer, Optional<Optional<Double>>> {
+    private final Function<Integer, Optional<Optional<Double>>> function;
+    private final int capacity;
+    private final LinkedHashMap<Integer, Optional<Optional<Double>>> cache;
+    private final ConcurrentHashMap<Integer, CompletableFuture<Optional<Optional<Double>>>> inFlight =
+            new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder sharedComputations = new LongAdder();
+
+    public CachedFunction(Function<Integer, Optional<Optional<Double>>> function, final int capacity){
+        if (capacity <= 0){
+            throw new IllegalArgumentException("capacity must be > 0");
+        }
+        this.function = function;
+        this.capacity = capacity;
+
+        // access-ordered map, so eldest entry is least recently used one
+        this.cache = new LinkedHashMap<>(16, 0.75f, true){
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Optional<Optional<Double>>> eldest) {
+                return size() > CachedFunction.this.capacity;
+            }
+        };
+    }
+
+    @Override
+    public Optional<Optional<Double>> apply(Integer x) {
+        while (true){
+            Optional<Optional<Double>> cachedResult;
+            synchronized (cache){
+                cachedResult = cache.get(x);
+            }
+            if (cachedResult != null){
+                hits.increment();
+                return cachedResult;
+            }
+
+            CompletableFuture<Optional<Optional<Double>>> computation = new CompletableFuture<>();
+            CompletableFuture<Optional<Optional<Double>>> existingComputation = inFlight.putIfAbsent(x, computation);
+            if (existingComputation == null){
+                return compute(x, computation);
+            }
+
+            // somebody is already computing this x
+            sharedComputations.increment();
+            try {
+                return existingComputation.get();
+            } catch (InterruptedException e){
+                throw TrialFunctions.cancelled();
+            } catch (ExecutionException e){
+                if (e.getCause() instanceof Error){
+                    throw (Error)e.getCause();
+                }
+                if (!(e.getCause() instanceof CancellationException)){
+                    throw (RuntimeException)e.getCause(); // function doesn't throw checked exceptions
+                }
+                // task, that was computing this x, is cancelled, but current one isn't, so try again
+            }
+        }
+    }
+
+    private Optional<Optional<Double>> compute(Integer x, CompletableFuture<Optional<Optional<Double>>> computation){
+        misses.increment();
+        try {
+            Optional<Optional<Double>> result = function.apply(x);
+            if (result.isPresent()){ // success or hard fail
+                synchronized (cache){
+                    cache.put(x, result);
+                }
+            }
+            // result is already in cache, so new callers won't start computation again
+            inFlight.remove(x);
+            computation.complete(result);
+            return result;
+        } catch (RuntimeException | Error e){ // waiting callers mustn't wait forever
+            inFlight.remove(x);
+            computation.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    public long getHits(){
+        return hits.sum();
+    }
+
+    public long getMisses(){
+        return misses.sum();
+    }
+
+    // number of calls, that waited for computation started by another caller
+    public long getSharedComputations(){
+        return sharedComputations.sum();
+    }
+
+    public int getSize(){
+        synchronized (cache){
+            return cache.size();
+        }
+    }
+
+    @Override
+    public String toString(){
+        return "cache: " + getSize() + "/" + capacity + " entries, " + getHits() + " hits, " +
+                getMisses() + " misses, " + getSharedComputations() + " shared computations";
+    }
+}
@@ -0,0 +1,47 @@
+package ua.drovolskyi.task_system;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+    Interruption of thread, that writes into channel, closes that channel. If channel is shared
+    by many tasks (see MultiplexedCompletionEngine), that breaks all of them. So task, which is
+    reporting its result, must not be interrupted: cancel() and sending race for the same state,
+    and only one of them wins
+ */
+public class CancellableResultSink implements ResultSink {
+    private static final int IDLE = 0;
+    private static final int SENDING = 1;
+    private static final int CANCELLED = 2;
+
+    private final ResultSink sink;
+    private final AtomicInteger state = new AtomicInteger(IDLE);
+
+    public CancellableResultSink(ResultSink sink){
+        this.sink = sink;
+    }
+
+    // returns true if result won't be sent, so task can be safely interrupted
+    public boolean cancel(){
+        return state.compareAndSet(IDLE, CANCELLED) || state.get() == CANCELLED;
+    }
+
+    // true if result won't be sent
+    public boolean isCancelled(){
+        return state.get() == CANCELLED;
+    }
+
+    @Override
+    public void sendResult(double result) throws IOException {
+        if (state.compareAndSet(IDLE, SENDING)){
+            sink.sendResult(result);
+        }
+    }
+
+    @Override
+    public void sendFailure(int failureId) throws IOException {
+        if (state.compareAndSet(IDLE, SENDING)){
+            sink.sendFailure(failureId);
+        }
+    }
+}
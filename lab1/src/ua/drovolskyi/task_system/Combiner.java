@@ -0,0 +1,94 @@
+package ua.drovolskyi.task_system;
+
+import java.util.OptionalDouble;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleFunction;
+import java.util.function.DoubleUnaryOperator;
+
+/*
+    Combines partial results of evaluation graph, values are in order of inputs of combining node.
+    Combiner can declare short-circuit rule (see shortCircuit()): if value of one input alone decides
+    the result, combining node is completed without waiting for other inputs, and tasks,
+    that compute them, are abandoned
+ */
+public interface Combiner {
+    Combiner SUM = reducing(Double::sum);
+    // 0 absorbs any other factor (infinite factors aren't expected)
+    Combiner PRODUCT = shortCircuiting(reducing((a, b) -> a * b),
+            value -> value == 0 ? OptionalDouble.of(0) : OptionalDouble.empty());
+    Combiner MIN = reducing(Math::min);
+    Combiner MAX = reducing(Math::max);
+    // logical operations over predicates (0 is false, other values are true), result is 0 or 1
+    Combiner AND = shortCircuiting(reducing((a, b) -> a != 0 && b != 0 ? 1 : 0).andThen(r -> r != 0 ? 1 : 0),
+            value -> value == 0 ? OptionalDouble.of(0) : OptionalDouble.empty());
+    Combiner OR = shortCircuiting(reducing((a, b) -> a != 0 || b != 0 ? 1 : 0).andThen(r -> r != 0 ? 1 : 0),
+            value -> value != 0 ? OptionalDouble.of(1) : OptionalDouble.empty());
+
+    double combine(double[] values);
+
+    // if given value of any input decides result of combining, returns that result, otherwise empty
+    default OptionalDouble shortCircuit(double value){
+        return OptionalDouble.empty();
+    }
+
+    // applies operation to combined value (e.g. to normalize it)
+    default Combiner andThen(DoubleUnaryOperator after){
+        return values -> after.applyAsDouble(combine(values));
+    }
+
+    // combiner, that reduces values from left to right by given operation
+    static Combiner reducing(DoubleBinaryOperator operation){
+        return (double[] values) -> {
+            double result = values[0];
+            for (int i = 1; i < values.length; i++){
+                result = operation.applyAsDouble(result, values[i]);
+            }
+            return result;
+        };
+    }
+
+    // adds short-circuit rule to combiner
+    static Combiner shortCircuiting(Combiner combiner, DoubleFunction<OptionalDouble> rule){
+        return new Combiner() {
+            @Override
+            public double combine(double[] values) {
+                return combiner.combine(values);
+            }
+
+            @Override
+            public OptionalDouble shortCircuit(double value) {
+                return rule.apply(value);
+            }
+        };
+    }
+
+    // minimum of values, that are known to be >= lowerBound, so value equal to lowerBound is minimum
+    static Combiner minWithLowerBound(double lowerBound){
+        return shortCircuiting(MIN, value -> value <= lowerBound ? OptionalDouble.of(value) : OptionalDouble.empty());
+    }
+
+    // maximum of values, that are known to be <= upperBound, so value equal to upperBound is maximum
+    static Combiner maxWithUpperBound(double upperBound){
+        return shortCircuiting(MAX, value -> value >= upperBound ? OptionalDouble.of(value) : OptionalDouble.empty());
+    }
+
+    // combiners, that can be chosen by name (e.g. in command line)
+    static Combiner byName(String name){
+        switch (name){
+            case "sum":
+                return SUM;
+            case "product":
+                return PRODUCT;
+            case "min":
+                return MIN;
+            case "max":
+                return MAX;
+            case "and":
+                return AND;
+            case "or":
+                return OR;
+            default:
+                throw new IllegalArgumentException("Unknown combiner: " + name);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package ua.drovolskyi.task_system;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/*
+    Manager side of result transport.
+    Manager registers every task, gives returned sink to TaskThread and then parks in await()
+    until some task is finished. Each finished task completes future of its TaskInfo,
+    so results can be also composed via TaskInfo.getCompletion()
+ */
+public interface CompletionEngine extends Closeable {
+
+    // creates result channel for task; returned sink must be used by task to report its result
+    ResultSink register(TaskInfo taskInfo) throws IOException;
+
+    /*
+        Parks until at least one task is finished, timeout is elapsed or wakeup() is called.
+        timeoutMillis == 0 means waiting without timeout.
+        If waiting thread is interrupted, returns at once and keeps interrupt flag set, so caller can see it.
+        Returns number of tasks finished during this call
+     */
+    int await(long timeoutMillis) throws IOException;
+
+    // makes current (or next) await() call return immediately, used for cancellation
+    void wakeup();
+
+    /*
+        Prepares engine for next evaluation: registered tasks are forgotten, and results, that aren't read yet,
+        are dropped. Must be called only when tasks don't send results anymore.
+        Returns false if engine can't be reused, then it must be closed
+     */
+    default boolean reset() throws IOException {
+        return false;
+    }
+
+    interface Factory {
+        CompletionEngine create() throws IOException;
+
+        // engine isn't needed by manager anymore (its tasks don't send results)
+        default void release(CompletionEngine engine) throws IOException {
+            engine.close();
+        }
+
+        /*
+            Released engines are reset and given by next create() calls, so Selector, pipes and buffers
+            are created once, not for every evaluation
+         */
+        static Factory reusing(Factory factory){
+            ConcurrentLinkedQueue<CompletionEngine> idleEngines = new ConcurrentLinkedQueue<>();
+            return new Factory() {
+                @Override
+                public CompletionEngine create() throws IOException {
+                    CompletionEngine engine = idleEngines.poll();
+                    return engine != null ? engine : factory.create();
+                }
+
+                @Override
+                public void release(CompletionEngine engine) throws IOException {
+                    if (engine.reset()){
+                        idleEngines.add(engine);
+                    }
+                    else{
+                        engine.close();
+                    }
+                }
+            };
+        }
+
+        /*
+            "pipe" - pipe per task, "multiplexed" - one pipe for all tasks, "queue" - blocking queue,
+            "ring[:spin|yield|park]" - ring buffer per task (see RingBufferCompletionEngine)
+         */
+        static Factory byName(String name){
+            String[] parts = name.split(":", 2);
+            if (parts[0].equals("ring")){
+                RingBufferCompletionEngine.WaitStrategy waitStrategy = parts.length == 2 ?
+                        RingBufferCompletionEngine.WaitStrategy.byName(parts[1]) :
+                        RingBufferCompletionEngine.WaitStrategy.PARK;
+                return reusing(() -> new RingBufferCompletionEngine(waitStrategy));
+            }
+            switch (name){
+                case "pipe":
+                    return reusing(PipeCompletionEngine::new);
+                case "multiplexed":
+                    return reusing(MultiplexedCompletionEngine::new);
+                case "queue":
+                    return reusing(FutureCompletionEngine::new);
+                default:
+                    throw new IllegalArgumentException("Unknown result channel: " + name);
+            }
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package ua.drovolskyi.task_system;
+
+// evaluation graph can't be computed, because one of its components is failed
+public class ComponentFailedException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final String componentName;
+    private final transient TaskInfo taskInfo; // exception is never sent out of process
+
+    public ComponentFailedException(String componentName, TaskInfo taskInfo){
+        super(taskInfo.describe(componentName));
+        this.componentName = componentName;
+        this.taskInfo = taskInfo;
+    }
+
+    public String getComponentName() {
+        return componentName;
+    }
+
+    public TaskInfo getTaskInfo() {
+        return taskInfo;
+    }
+}
@@ -0,0 +1,227 @@
+package ua.drovolskyi.task_system;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/*
+    Control endpoint on loopback interface, text protocol (one command per line, e.g. via netcat):
+     - "list" - evaluations in flight: id, x, elapsed time and states of components
+     - "cancel <id>" - cancel evaluation
+     - "limits" - current values of concurrency limits
+     - "limit <name> <value>" - change concurrency limit
+    Every response ends with line "ok" or "error: <reason>".
+    Server is non-blocking: it is served by Selector of MultiplexedCompletionEngine (see attach()),
+    so it doesn't need own thread, or by its own thread (see start()) if there is no such engine
+ */
+public class ControlServer implements SelectionHandler, Closeable {
+    private static final int MAX_COMMAND_LENGTH = 1024;
+
+    private final ServerSocketChannel serverChannel;
+    private final EvaluationRegistry registry;
+    private final Map<String, Limit> limits;
+    private Selector ownSelector;
+    private Thread selectorThread;
+
+    public ControlServer(int port, EvaluationRegistry registry, Map<String, Limit> limits) throws IOException {
+        this.registry = registry;
+        this.limits = new TreeMap<>(limits);
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+    }
+
+    // useful if server is created with port 0 (any free port)
+    public int getPort(){
+        return serverChannel.socket().getLocalPort();
+    }
+
+    // connections will be handled in thread, that waits for results of tasks
+    public void attach(MultiplexedCompletionEngine engine) throws IOException {
+        engine.addHandler(serverChannel, SelectionKey.OP_ACCEPT, this);
+    }
+
+    // connections will be handled by own daemon thread
+    public synchronized void start() throws IOException {
+        if (selectorThread != null){
+            return;
+        }
+        ownSelector = Selector.open();
+        serverChannel.configureBlocking(false);
+        serverChannel.register(ownSelector, SelectionKey.OP_ACCEPT, this);
+
+        selectorThread = new Thread(() -> {
+            try {
+                while (ownSelector.isOpen()){
+                    ownSelector.select();
+                    Iterator<SelectionKey> keyIterator = ownSelector.selectedKeys().iterator();
+                    while (keyIterator.hasNext()){
+                        SelectionKey key = keyIterator.next();
+                        keyIterator.remove();
+                        ((SelectionHandler)key.attachment()).onReady(key);
+                    }
+                }
+            } catch (IOException e) {
+                if (ownSelector.isOpen()){
+                    throw new RuntimeException(e);
+                }
+            } catch (RuntimeException e){
+                if (ownSelector.isOpen()){ // selector is closed while selecting
+                    throw e;
+                }
+            }
+        }, "control-server");
+        selectorThread.setDaemon(true);
+        selectorThread.start();
+    }
+
+    // new connection
+    @Override
+    public void onReady(SelectionKey key) throws IOException {
+        SocketChannel client = serverChannel.accept();
+        if (client == null){
+            return;
+        }
+        client.configureBlocking(false);
+        client.register(key.selector(), SelectionKey.OP_READ, new Connection(client));
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        serverChannel.close();
+        if (ownSelector != null){
+            for (SelectionKey key : ownSelector.keys()){
+                key.channel().close();
+            }
+            ownSelector.close();
+        }
+    }
+
+    private String execute(String command){
+        String[] words = command.trim().split("\\s+");
+        StringBuilder response = new StringBuilder();
+        switch (words[0]){
+            case "list":
+                for (EvaluationRegistry.Entry entry : registry.list()){
+                    response.append(entry.getId()).append("\tx = ").append(entry.getX())
+                            .append('\t').append(entry.getElapsedMillis()).append(" ms\t")
+                            .append(entry.describe()).append('\n');
+                }
+                return response.append("ok\n").toString();
+            case "cancel":
+                if (words.length != 2){
+                    return "error: usage is 'cancel <id>'\n";
+                }
+                try {
+                    return registry.cancel(Long.parseLong(words[1])) ?
+                            "ok\n" : "error: there is no evaluation " + words[1] + "\n";
+                } catch (NumberFormatException e){
+                    return "error: id must be integer value\n";
+                }
+            case "limits":
+                for (Map.Entry<String, Limit> limit : limits.entrySet()){
+                    response.append(limit.getKey()).append(" = ").append(limit.getValue().get()).append('\n');
+                }
+                return response.append("ok\n").toString();
+            case "limit":
+                if (words.length != 3){
+                    return "error: usage is 'limit <name> <value>'\n";
+                }
+                Limit limit = limits.get(words[1]);
+                if (limit == null){
+                    return "error: unknown limit " + words[1] + "\n";
+                }
+                try {
+                    limit.set(Integer.parseInt(words[2]));
+                    return "ok\n";
+                } catch (IllegalArgumentException e){ // NumberFormatException too
+                    return "error: " + e.getMessage() + "\n";
+                }
+            case "":
+                return "";
+            default:
+                return "error: unknown command " + words[0] + ", commands are: list, cancel, limits, limit\n";
+        }
+    }
+
+
+    // concurrency limit, that can be changed at runtime
+    public interface Limit {
+        int get();
+
+        // throws IllegalArgumentException if value isn't allowed
+        void set(int value);
+    }
+
+    // client connection: reads commands and writes responses without blocking
+    private class Connection implements SelectionHandler {
+        private final SocketChannel channel;
+        private final ByteBuffer input = ByteBuffer.allocate(MAX_COMMAND_LENGTH);
+        private ByteBuffer output = ByteBuffer.allocate(0);
+
+        private Connection(SocketChannel channel){
+            this.channel = channel;
+        }
+
+        @Override
+        public void onReady(SelectionKey key) {
+            try {
+                if (key.isReadable()){
+                    if (channel.read(input) < 0){
+                        close(key);
+                        return;
+                    }
+                    processCommands();
+                }
+                if (output.hasRemaining()){
+                    channel.write(output);
+                }
+                key.interestOps(output.hasRemaining() ? SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+            } catch (IOException e){ // client is gone, it mustn't break server
+                close(key);
+            }
+        }
+
+        private void processCommands() throws IOException {
+            input.flip();
+            int lineStart = 0;
+            for (int i = 0; i < input.limit(); i++){
+                if (input.get(i) == '\n'){
+                    String command = new String(input.array(), lineStart, i - lineStart, StandardCharsets.UTF_8);
+                    respond(execute(command));
+                    lineStart = i + 1;
+                }
+            }
+            input.position(lineStart);
+            input.compact();
+            if (!input.hasRemaining()){
+                throw new IOException("Command is too long");
+            }
+        }
+
+        private void respond(String response){
+            byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer newOutput = ByteBuffer.allocate(output.remaining() + bytes.length);
+            newOutput.put(output).put(bytes).flip();
+            output = newOutput;
+        }
+
+        private void close(SelectionKey key){
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // nothing to do, connection is closed anyway
+            }
+        }
+    }
+}
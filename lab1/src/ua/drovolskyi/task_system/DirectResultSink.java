@@ -0,0 +1,23 @@
+package ua.drovolskyi.task_system;
+
+/*
+    Fills TaskInfo right in the task thread, without any channel between task and manager.
+    Everybody, who is interested in the result, must wait for TaskInfo.getCompletion()
+ */
+public class DirectResultSink implements ResultSink {
+    private final TaskInfo taskInfo;
+
+    public DirectResultSink(TaskInfo taskInfo){
+        this.taskInfo = taskInfo;
+    }
+
+    @Override
+    public void sendResult(double result) {
+        taskInfo.finish(SUCCESS, result);
+    }
+
+    @Override
+    public void sendFailure(int failureId) {
+        taskInfo.finish(failureId, 0);
+    }
+}
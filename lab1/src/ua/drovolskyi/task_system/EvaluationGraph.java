@@ -0,0 +1,315 @@
+package ua.drovolskyi.task_system;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+
+/*
+    Expression, that must be computed for x.
+    Leaves of graph are components (functions, each is computed by separate task),
+    other nodes combine results of their inputs. Nodes can be shared, so graph is DAG.
+    Every component is computed once per evaluation, and every combining node is computed
+    as soon as all its inputs are ready, or as soon as one input decides its result
+    (see Combiner.shortCircuit()). When node is completed early, its inputs, that aren't needed
+    by other pending nodes, are abandoned, down to their components
+ */
+public class EvaluationGraph {
+    public static final int DEFAULT_MAX_COMPUTATION_ATTEMPTS = 5;
+
+    private static final Future<?> ABANDONED_TASK = CompletableFuture.completedFuture(null);
+
+    private final List<Component> components = new ArrayList<>();
+    private Node root;
+
+    // default expression of task system: f(x) + g(x)
+    public static EvaluationGraph sumOfTrialFunctions(){
+        EvaluationGraph graph = new EvaluationGraph();
+        Node f = graph.component("f", TrialFunctions.F);
+        Node g = graph.component("g", TrialFunctions.G);
+        graph.setRoot(graph.combine(Combiner.SUM, f, g));
+        return graph;
+    }
+
+    public Node component(String name, Function<Integer, Optional<Optional<Double>>> function){
+        return component(name, function, RetryPolicy.immediate(DEFAULT_MAX_COMPUTATION_ATTEMPTS));
+    }
+
+    public Node component(String name, Function<Integer, Optional<Optional<Double>>> function,
+                          RetryPolicy retryPolicy){
+        Component component = new Component(components.size(), name, function, retryPolicy);
+        components.add(component);
+        return component;
+    }
+
+    public Node combine(Combiner combiner, Node... inputs){
+        if (inputs.length == 0){
+            throw new IllegalArgumentException("Combining node must have at least one input");
+        }
+        return new CombiningNode(combiner, List.of(inputs));
+    }
+
+    public void setRoot(Node root){
+        this.root = root;
+    }
+
+    public List<Component> getComponents(){
+        return Collections.unmodifiableList(components);
+    }
+
+    /*
+        Builds future of graph result from tasks of components (taskInfos.get(i) belongs to i-th component).
+        Future is completed exceptionally with ComponentFailedException
+        as soon as any needed component is failed
+     */
+    public CompletableFuture<Double> evaluate(List<TaskInfo> taskInfos){
+        return evaluate(taskInfos, componentIndex -> {});
+    }
+
+    /*
+        The same, but abandonComponent is called with index of component, which result isn't needed anymore
+        (e.g. it is under product, that is short-circuited by 0), so that its task can be cancelled.
+        It is called in thread, that completes node, and can be called for finished component too
+     */
+    public CompletableFuture<Double> evaluate(List<TaskInfo> taskInfos, IntConsumer abandonComponent){
+        if (root == null){
+            throw new IllegalStateException("Root of graph is not set");
+        }
+        if (taskInfos.size() != components.size()){
+            throw new IllegalArgumentException("Every component must have its TaskInfo");
+        }
+        return root.evaluate(new Evaluation(taskInfos, abandonComponent));
+    }
+
+    // started TaskInfos for all components, i-th one belongs to i-th component
+    public List<TaskInfo> createTaskInfos(){
+        List<TaskInfo> taskInfos = new ArrayList<>();
+        for (Component component : components){
+            TaskInfo info = new TaskInfo(component.getRetryPolicy().getMaxAttempts());
+            info.start();
+            taskInfos.add(info);
+        }
+        return taskInfos;
+    }
+
+    /*
+        Evaluation for x in executor (used by BatchEvaluator, EvaluationServer and LoadGenerator):
+        tasks of components are submitted to workers and hand over results directly to taskInfos,
+        evaluation is counted in Metrics and can be found (and cancelled) in EvaluationRegistry.
+        When returned future is completed in any way (also by cancel() or by caller on timeout),
+        tasks, that are still computing, are interrupted, so that workers are free for next evaluations.
+        If workers reject task, future is failed with RejectedExecutionException
+     */
+    public CompletableFuture<Double> start(int x, List<TaskInfo> taskInfos, ExecutorService workers){
+        long startTime = Metrics.GLOBAL.evaluationStarted();
+        // task of component, or ABANDONED_TASK if it isn't needed anymore (it can happen before it is submitted)
+        AtomicReferenceArray<Future<?>> tasks = new AtomicReferenceArray<>(components.size());
+        IntConsumer abandonComponent = index -> {
+            Future<?> task = tasks.getAndSet(index, ABANDONED_TASK);
+            if (task != null){
+                task.cancel(true);
+            }
+        };
+        CompletableFuture<Double> result = evaluate(taskInfos, abandonComponent);
+        long registryId = EvaluationRegistry.GLOBAL.register(x, this, taskInfos, () -> result.cancel(true));
+
+        try {
+            for (Component component : components){
+                TaskInfo info = taskInfos.get(component.getIndex());
+                Future<?> task = workers.submit(new TaskThread(x, component.getFunction(), component.getRetryPolicy(),
+                        component.getMetrics(), info, new DirectResultSink(info)));
+                if (!tasks.compareAndSet(component.getIndex(), null, task)){
+                    task.cancel(true);
+                }
+            }
+        } catch (RejectedExecutionException e){ // executor is overloaded (see AdaptiveExecutor)
+            result.completeExceptionally(e);
+        }
+
+        result.whenComplete((value, exception) -> {
+            for (int i = 0; i < tasks.length(); i++){
+                abandonComponent.accept(i);
+            }
+            Metrics.GLOBAL.evaluationFinished(startTime);
+            EvaluationRegistry.GLOBAL.unregister(registryId);
+        });
+        return result;
+    }
+
+    // if future is failed because of component, returns that exception, otherwise returns null
+    public static ComponentFailedException getComponentFailure(CompletableFuture<Double> result){
+        try {
+            result.join();
+            return null;
+        } catch (CompletionException e){
+            if (e.getCause() instanceof ComponentFailedException){
+                return (ComponentFailedException)e.getCause();
+            }
+            throw e;
+        }
+    }
+
+
+    public static abstract class Node {
+        // result of node, it is computed once per evaluation, even if node is shared
+        CompletableFuture<Double> evaluate(Evaluation evaluation){
+            evaluation.consumers.computeIfAbsent(this, node -> new AtomicInteger()).incrementAndGet();
+            CompletableFuture<Double> result = evaluation.results.get(this);
+            if (result == null){
+                result = start(evaluation);
+                evaluation.results.put(this, result);
+            }
+            return result;
+        }
+
+        // called by consumer of result (see evaluate()), that doesn't need it anymore
+        void release(Evaluation evaluation){
+            if (evaluation.consumers.get(this).decrementAndGet() == 0){
+                abandon(evaluation);
+            }
+        }
+
+        abstract CompletableFuture<Double> start(Evaluation evaluation);
+
+        // result isn't needed by any pending node
+        abstract void abandon(Evaluation evaluation);
+    }
+
+    public static class Component extends Node {
+        private final int index;
+        private final String name;
+        private final Function<Integer, Optional<Optional<Double>>> function;
+        private final RetryPolicy retryPolicy;
+        private final FunctionMetrics metrics;
+
+        private Component(int index, String name, Function<Integer, Optional<Optional<Double>>> function,
+                          RetryPolicy retryPolicy){
+            this.index = index;
+            this.name = name;
+            this.function = function;
+            this.retryPolicy = retryPolicy;
+            this.metrics = Metrics.GLOBAL.function(name);
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Function<Integer, Optional<Optional<Double>>> getFunction() {
+            return function;
+        }
+
+        public RetryPolicy getRetryPolicy() {
+            return retryPolicy;
+        }
+
+        public FunctionMetrics getMetrics() {
+            return metrics;
+        }
+
+        @Override
+        CompletableFuture<Double> start(Evaluation evaluation) {
+            return evaluation.taskInfos.get(index).getCompletion().thenApply(info -> {
+                if (!info.isFinishedSuccessfully()){
+                    throw new ComponentFailedException(name, info);
+                }
+                return info.getResult();
+            });
+        }
+
+        @Override
+        void abandon(Evaluation evaluation) {
+            evaluation.abandonComponent.accept(index);
+        }
+    }
+
+    private static class CombiningNode extends Node {
+        private final Combiner combiner;
+        private final List<Node> inputs;
+
+        private CombiningNode(Combiner combiner, List<Node> inputs){
+            this.combiner = combiner;
+            this.inputs = inputs;
+        }
+
+        @Override
+        CompletableFuture<Double> start(Evaluation evaluation) {
+            CompletableFuture<Double> combined = new CompletableFuture<>();
+            List<CompletableFuture<Double>> inputResults = new ArrayList<>();
+            for (Node input : inputs){
+                inputResults.add(input.evaluate(evaluation));
+            }
+
+            double[] values = new double[inputs.size()];
+            AtomicInteger remainingInputs = new AtomicInteger(inputs.size());
+            for (int i = 0; i < inputs.size(); i++){
+                int inputIndex = i;
+                inputResults.get(i).whenComplete((value, exception) -> {
+                    if (exception != null){ // there is no need to wait other inputs
+                        combined.completeExceptionally(exception instanceof CompletionException ?
+                                exception.getCause() : exception);
+                        return;
+                    }
+                    OptionalDouble decided = combiner.shortCircuit(value);
+                    if (decided.isPresent()){ // result doesn't depend on other inputs, they are abandoned
+                        combined.complete(decided.getAsDouble());
+                        return;
+                    }
+                    values[inputIndex] = value;
+                    // decrement publishes values[inputIndex] to thread, that combines values
+                    if (remainingInputs.decrementAndGet() == 0){
+                        try {
+                            combined.complete(combiner.combine(values));
+                        } catch (RuntimeException e){
+                            combined.completeExceptionally(e);
+                        }
+                    }
+                });
+            }
+
+            // if node is completed early (or abandoned), inputs, that are still computing, aren't needed by it
+            combined.whenComplete((value, exception) -> {
+                for (int i = 0; i < inputs.size(); i++){
+                    if (!inputResults.get(i).isDone()){
+                        inputs.get(i).release(evaluation);
+                    }
+                }
+            });
+            return combined;
+        }
+
+        @Override
+        void abandon(Evaluation evaluation) {
+            evaluation.results.get(this).cancel(false); // its pending inputs are released, see start()
+        }
+    }
+
+    // state of one evaluation of graph, maps are filled before any task is started and only read after that
+    static class Evaluation {
+        private final List<TaskInfo> taskInfos;
+        private final IntConsumer abandonComponent;
+        private final Map<Node, CompletableFuture<Double>> results = new IdentityHashMap<>();
+        private final Map<Node, AtomicInteger> consumers = new IdentityHashMap<>(); // pending nodes, that need node
+
+        private Evaluation(List<TaskInfo> taskInfos, IntConsumer abandonComponent){
+            this.taskInfos = taskInfos;
+            this.abandonComponent = abandonComponent;
+        }
+    }
+}
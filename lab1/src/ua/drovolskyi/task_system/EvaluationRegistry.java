@@ -0,0 +1,118 @@
+package ua.drovolskyi.task_system;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+    Evaluations, that are in flight now (one instance per JVM, see GLOBAL).
+    Manager and BatchEvaluator register every evaluation while it is computed,
+    so it can be inspected and cancelled from outside (see ControlServer)
+ */
+public class EvaluationRegistry {
+    public static final EvaluationRegistry GLOBAL = new EvaluationRegistry();
+
+    private final Map<Long, Entry> evaluations = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong(1);
+
+    /*
+        taskInfos.get(i) belongs to i-th component of graph,
+        canceller stops evaluation (it can be called from any thread); returns id of evaluation
+     */
+    public long register(int x, EvaluationGraph graph, List<TaskInfo> taskInfos, Runnable canceller){
+        long id = nextId.getAndIncrement();
+        evaluations.put(id, new Entry(id, x, graph, taskInfos, canceller));
+        return id;
+    }
+
+    public void unregister(long id){
+        evaluations.remove(id);
+    }
+
+    // returns false if there is no such evaluation (e.g. it is already finished)
+    public boolean cancel(long id){
+        Entry entry = evaluations.get(id);
+        if (entry == null){
+            return false;
+        }
+        entry.canceller.run();
+        return true;
+    }
+
+    // evaluations in order of their start
+    public List<Entry> list(){
+        List<Entry> result = new ArrayList<>(evaluations.values());
+        result.sort((a, b) -> Long.compare(a.id, b.id));
+        return result;
+    }
+
+
+    // prints progress of every evaluation in flight to out every periodMillis, in daemon thread
+    public void startProgressReporter(long periodMillis, PrintStream out){
+        if (periodMillis <= 0){
+            throw new IllegalArgumentException("periodMillis must be > 0");
+        }
+        Thread reporterThread = new Thread(() -> {
+            try {
+                while (true){
+                    Thread.sleep(periodMillis);
+                    for (Entry entry : list()){
+                        out.println("[" + entry.getId() + "] x = " + entry.getX() + ", " +
+                                entry.getElapsedMillis() + " ms: " + entry.describe());
+                    }
+                }
+            } catch (InterruptedException e) {
+                // reporter is stopped
+            }
+        }, "progress-reporter");
+        reporterThread.setDaemon(true);
+        reporterThread.start();
+    }
+
+
+    public static class Entry {
+        private final long id;
+        private final int x;
+        private final long startTime;
+        private final EvaluationGraph graph;
+        private final List<TaskInfo> taskInfos;
+        private final Runnable canceller;
+
+        private Entry(long id, int x, EvaluationGraph graph, List<TaskInfo> taskInfos, Runnable canceller){
+            this.id = id;
+            this.x = x;
+            this.startTime = System.nanoTime();
+            this.graph = graph;
+            this.taskInfos = taskInfos;
+            this.canceller = canceller;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public int getX() {
+            return x;
+        }
+
+        public long getElapsedMillis(){
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+        }
+
+        // states of components with their progress, e.g. "f(x) - computed (attempts 1, computed 350 ms), ..."
+        public String describe(){
+            StringBuilder builder = new StringBuilder();
+            for (EvaluationGraph.Component component : graph.getComponents()){
+                if (builder.length() > 0){
+                    builder.append(", ");
+                }
+                builder.append(taskInfos.get(component.getIndex()).describeProgress(component.getName()));
+            }
+            return builder.toString();
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package ua.drovolskyi.task_system;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/*
+    Result of one evaluation of graph (see Manager.evaluate()).
+    Besides value of graph it contains state of every component at the moment, when evaluation was finished,
+    so if graph isn't computed (deadline expired, computations cancelled or failed),
+    results of components, that are already computed, are still available
+ */
+public class EvaluationResult {
+    private final Outcome outcome;
+    private final double value;
+    private final String failureReason;
+    private final List<ComponentState> components;
+
+    private EvaluationResult(Outcome outcome, double value, String failureReason, List<ComponentState> components){
+        this.outcome = outcome;
+        this.value = value;
+        this.failureReason = failureReason;
+        this.components = Collections.unmodifiableList(components);
+    }
+
+    static EvaluationResult computed(double value, List<ComponentState> components){
+        return new EvaluationResult(Outcome.COMPUTED, value, null, components);
+    }
+
+    static EvaluationResult failed(ComponentFailedException failure, List<ComponentState> components){
+        return new EvaluationResult(Outcome.FAILED, 0, failure.getMessage(), components);
+    }
+
+    static EvaluationResult timedOut(List<ComponentState> components){
+        return new EvaluationResult(Outcome.TIMED_OUT, 0, null, components);
+    }
+
+    static EvaluationResult cancelled(List<ComponentState> components){
+        return new EvaluationResult(Outcome.CANCELLED, 0, null, components);
+    }
+
+    // executor has no room for tasks (see AdaptiveExecutor), reason is kept in failureReason
+    static EvaluationResult rejected(String reason, List<ComponentState> components){
+        return new EvaluationResult(Outcome.REJECTED, 0, reason, components);
+    }
+
+    // takes snapshot of components of graph
+    static List<ComponentState> snapshot(EvaluationGraph graph, List<TaskInfo> taskInfos){
+        List<ComponentState> components = new ArrayList<>();
+        for (EvaluationGraph.Component component : graph.getComponents()){
+            TaskInfo info = taskInfos.get(component.getIndex());
+            TaskInfo.Status status = info.getStatus(); // it is read once, because task can be finished meanwhile
+            components.add(new ComponentState(component.getName(), status,
+                    status == TaskInfo.Status.FINISHED_SUCCESSFULLY ? info.getResult() : Double.NaN,
+                    info.describe(component.getName(), status)));
+        }
+        return components;
+    }
+
+    public Outcome getOutcome() {
+        return outcome;
+    }
+
+    public boolean isComputed(){
+        return outcome == Outcome.COMPUTED;
+    }
+
+    public double getValue() {
+        if (outcome != Outcome.COMPUTED){
+            throw new IllegalStateException("Graph isn't computed: " + outcome);
+        }
+        return value;
+    }
+
+    // description of failed component (or reason of rejection), or null if no component is failed
+    public String getFailureReason() {
+        return failureReason;
+    }
+
+    public List<ComponentState> getComponents() {
+        return components;
+    }
+
+    @Override
+    public String toString() {
+        switch (outcome){
+            case COMPUTED:
+                return "Result = " + value;
+            case FAILED:
+                return "Computations failed. Reason is: \n" + failureReason;
+            case REJECTED:
+                return "Computations rejected, system is overloaded: " + failureReason;
+            default:
+                StringBuilder builder = new StringBuilder(outcome == Outcome.TIMED_OUT ?
+                        "Computations timed out:" : "Computations cancelled:");
+                for (ComponentState component : components){
+                    builder.append('\n').append(component.getDescription());
+                }
+                return builder.toString();
+        }
+    }
+
+
+    public static class ComponentState {
+        private final String name;
+        private final TaskInfo.Status status;
+        private final double result;
+        private final String description;
+
+        private ComponentState(String name, TaskInfo.Status status, double result, String description){
+            this.name = name;
+            this.status = status;
+            this.result = result;
+            this.description = description;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public TaskInfo.Status getStatus() {
+            return status;
+        }
+
+        public boolean isComputed(){
+            return status == TaskInfo.Status.FINISHED_SUCCESSFULLY;
+        }
+
+        // result of component, or NaN if it isn't computed
+        public double getResult() {
+            return result;
+        }
+
+        // e.g. "f(x) - computed", "g(x) - timed out"
+        public String getDescription() {
+            return description;
+        }
+    }
+
+    public static enum Outcome {
+        COMPUTED,
+        FAILED,
+        TIMED_OUT,
+        CANCELLED,
+        REJECTED
+    }
+}
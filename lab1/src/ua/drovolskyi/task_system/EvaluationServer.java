@@ -0,0 +1,438 @@
+package ua.drovolskyi.task_system;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/*
+    Long-running server, that evaluates combination of functions for requests over loopback TCP,
+    so JVM startup and JIT warm-up are paid once, not for every x.
+    Protocol is text, one request per line:
+    "<x> [deadline=<MS>] [functions=<NAME>,<NAME>...] [combiner=<NAME>]"
+    (functions are f and g by default, see FunctionProvider; combiner is sum by default,
+    see Combiner.byName()). Requests can be pipelined,
+    and responses are written as soon as evaluations are finished, so every response is tagged
+    with index of request on its connection (starting from 0):
+     - "<index>\t<x>\t<result>"
+     - "<index>\t<x>\tfailed: <description of failed component>"
+     - "<index>\t<x>\ttimed out: <states of components>"
+     - "<index>\t<x>\tcancelled" (through control endpoint)
+     - "<index>\t<x>\trejected: <reason>" if executor is overloaded (see AdaptiveExecutor)
+     - "<index>\terror: <reason>" for malformed request
+
+    All connections are served by single thread (reactor) with Selector; tasks are computed by worker threads,
+    which hand finished responses back to reactor through queue and wake up its Selector.
+    If maxEvaluationsInFlight evaluations are in flight, requests aren't read until some of them are finished
+ */
+public class EvaluationServer implements Closeable {
+    private static final int MAX_REQUEST_LENGTH = 1024;
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+    private static final int MAX_CACHED_GRAPHS = 64;
+
+    private final ServerSocketChannel serverChannel;
+    private final Selector selector;
+    private final ExecutorService workers;
+    private final FunctionProvider functionProvider;
+    private final int maxEvaluationsInFlight;
+
+    // fields below are used only by reactor thread (except finishedResponses)
+    // by functions and combiner; keys come from clients, so least recently used graph is evicted when map is full
+    private final Map<String, EvaluationGraph> graphs = new LinkedHashMap<>(16, 0.75f, true){
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, EvaluationGraph> eldest) {
+            return size() > MAX_CACHED_GRAPHS;
+        }
+    };
+    private final ConcurrentLinkedQueue<Response> finishedResponses = new ConcurrentLinkedQueue<>();
+    private final PriorityQueue<Deadline> deadlines = new PriorityQueue<>((a, b) -> Long.compare(a.time, b.time));
+    private final ArrayDeque<Connection> pausedConnections = new ArrayDeque<>();
+    private int evaluationsInFlight = 0;
+    private volatile boolean closed = false;
+
+    public EvaluationServer(int port, ExecutorService workers, int maxEvaluationsInFlight) throws IOException {
+        this(port, workers, maxEvaluationsInFlight, TrialFunctions.PROVIDER);
+    }
+
+    public EvaluationServer(int port, ExecutorService workers, int maxEvaluationsInFlight,
+                            FunctionProvider functionProvider) throws IOException {
+        if (maxEvaluationsInFlight <= 0){
+            throw new IllegalArgumentException("maxEvaluationsInFlight must be > 0");
+        }
+        this.workers = workers;
+        this.functionProvider = functionProvider;
+        this.maxEvaluationsInFlight = maxEvaluationsInFlight;
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT, (SelectionHandler)key -> accept());
+    }
+
+    // useful if server is created with port 0 (any free port)
+    public int getPort(){
+        return serverChannel.socket().getLocalPort();
+    }
+
+    // reactor loop, runs in calling thread until server is closed
+    public void run() throws IOException {
+        while (!closed){
+            long timeoutMillis = 0;
+            if (!deadlines.isEmpty()){
+                long remainingNanos = deadlines.peek().time - System.nanoTime();
+                // select(0) waits without timeout, so at least 1 ms is waited
+                timeoutMillis = Math.max(TimeUnit.NANOSECONDS.toMillis(remainingNanos), 1);
+            }
+            selector.select(timeoutMillis);
+            if (closed){
+                break;
+            }
+            Metrics.GLOBAL.recordSelectorWakeup();
+
+            Iterator<SelectionKey> keyIterator = selector.selectedKeys().iterator();
+            while (keyIterator.hasNext()){
+                SelectionKey key = keyIterator.next();
+                keyIterator.remove();
+                if (key.isValid()){
+                    ((SelectionHandler)key.attachment()).onReady(key);
+                }
+            }
+
+            expireDeadlines();
+            writeFinishedResponses();
+            resumePausedConnections();
+        }
+    }
+
+    // can be called from any thread
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        selector.wakeup();
+        serverChannel.close();
+        for (SelectionKey key : selector.keys()){
+            key.channel().close();
+        }
+        selector.close();
+    }
+
+    private void accept() throws IOException {
+        SocketChannel client = serverChannel.accept();
+        if (client == null){
+            return;
+        }
+        client.configureBlocking(false);
+        Connection connection = new Connection(client);
+        connection.key = client.register(selector, SelectionKey.OP_READ, connection);
+    }
+
+    private void expireDeadlines(){
+        long now = System.nanoTime();
+        while (!deadlines.isEmpty() && deadlines.peek().time <= now){
+            // if evaluation is already finished, nothing happens
+            deadlines.poll().result.completeExceptionally(new TimeoutException());
+        }
+    }
+
+    private void writeFinishedResponses(){
+        Response response;
+        while ((response = finishedResponses.poll()) != null){
+            evaluationsInFlight--;
+            response.connection.pendingEvaluations--;
+            if (response.deadline != null){
+                // queue holds only deadlines of evaluations in flight, so it doesn't grow
+                deadlines.remove(response.deadline);
+            }
+            response.connection.send(response.text);
+            response.connection.updateInterest();
+        }
+    }
+
+    // connections, which requests weren't read because of limit, continue reading
+    private void resumePausedConnections(){
+        while (evaluationsInFlight < maxEvaluationsInFlight && !pausedConnections.isEmpty()){
+            Connection connection = pausedConnections.poll();
+            if (connection.key.isValid()){
+                connection.processRequests();
+            }
+        }
+    }
+
+    // parses request line and starts its evaluation; returns response if request is malformed
+    private String startEvaluation(Connection connection, long index, String request){
+        String[] words = request.trim().split("\\s+");
+        int x;
+        long deadlineMillis = 0;
+        String functions = "f,g";
+        String combiner = "sum";
+        try {
+            x = Integer.parseInt(words[0]);
+            for (int i = 1; i < words.length; i++){
+                if (words[i].startsWith("deadline=")){
+                    deadlineMillis = Long.parseLong(words[i].substring("deadline=".length()));
+                    if (deadlineMillis < 0){
+                        return index + "\terror: deadline must be >= 0\n";
+                    }
+                }
+                else if (words[i].startsWith("functions=")){
+                    functions = words[i].substring("functions=".length());
+                }
+                else if (words[i].startsWith("combiner=")){
+                    combiner = words[i].substring("combiner=".length());
+                }
+                else{
+                    return index + "\terror: unknown parameter " + words[i] + "\n";
+                }
+            }
+        } catch (NumberFormatException e){
+            return index + "\terror: x and deadline must be integer values\n";
+        }
+
+        EvaluationGraph graph;
+        try {
+            graph = getGraph(functions, combiner);
+        } catch (IllegalArgumentException e){
+            return index + "\terror: " + e.getMessage() + "\n";
+        }
+
+        long startTime = System.nanoTime();
+        List<TaskInfo> taskInfos = graph.createTaskInfos();
+        CompletableFuture<Double> result = graph.start(x, taskInfos, workers);
+        evaluationsInFlight++;
+        connection.pendingEvaluations++;
+        Deadline deadline = null;
+        if (deadlineMillis > 0){
+            deadline = new Deadline(startTime + TimeUnit.MILLISECONDS.toNanos(deadlineMillis), result);
+            deadlines.add(deadline);
+        }
+
+        // runs in worker thread (or in reactor, if deadline expires)
+        Deadline evaluationDeadline = deadline;
+        result.whenComplete((value, exception) -> {
+            finishedResponses.add(new Response(connection, evaluationDeadline,
+                    index + "\t" + x + "\t" + formatResult(graph, taskInfos, result) + "\n"));
+            selector.wakeup();
+        });
+        return null;
+    }
+
+    private static String formatResult(EvaluationGraph graph, List<TaskInfo> taskInfos,
+                                       CompletableFuture<Double> result){
+        try {
+            return String.valueOf(result.join());
+        } catch (CancellationException e){
+            return "cancelled";
+        } catch (CompletionException e){
+            if (e.getCause() instanceof ComponentFailedException){
+                return "failed: " + e.getCause().getMessage();
+            }
+            if (e.getCause() instanceof RejectedExecutionException){
+                return "rejected: " + e.getCause().getMessage();
+            }
+            if (!(e.getCause() instanceof TimeoutException)){
+                throw e;
+            }
+        }
+
+        StringBuilder builder = new StringBuilder("timed out: ");
+        for (EvaluationGraph.Component component : graph.getComponents()){
+            TaskInfo info = taskInfos.get(component.getIndex());
+            info.timeOut(); // finished tasks keep their results
+            if (component.getIndex() > 0){
+                builder.append(", ");
+            }
+            builder.append(info.describe(component.getName()));
+        }
+        return builder.toString();
+    }
+
+    // given functions combined by given combiner, one graph for every such pair, so metrics and retry policies are shared
+    private EvaluationGraph getGraph(String functions, String combiner){
+        String key = functions + " " + combiner;
+        EvaluationGraph graph = graphs.get(key);
+        if (graph != null){
+            return graph;
+        }
+        Combiner rootCombiner = Combiner.byName(combiner);
+        graph = new EvaluationGraph();
+        String[] names = functions.split(",");
+        EvaluationGraph.Node[] components = new EvaluationGraph.Node[names.length];
+        for (int i = 0; i < names.length; i++){
+            components[i] = graph.component(names[i], functionProvider.getFunction(names[i]));
+        }
+        graph.setRoot(graph.combine(rootCombiner, components));
+        graphs.put(key, graph);
+        return graph;
+    }
+
+
+    private class Connection implements SelectionHandler {
+        private final SocketChannel channel;
+        private final ByteBuffer input = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        private ByteBuffer output = ByteBuffer.allocate(0);
+        private SelectionKey key;
+        private long nextRequestIndex = 0;
+        private int pendingEvaluations = 0; // of this connection, their responses aren't written yet
+        private boolean paused = false;
+        private boolean inputClosed = false;
+
+        private Connection(SocketChannel channel){
+            this.channel = channel;
+        }
+
+        @Override
+        public void onReady(SelectionKey key) {
+            try {
+                if (key.isReadable() && !paused){
+                    if (channel.read(input) < 0){
+                        // client has sent all requests, responses for them are still written
+                        inputClosed = true;
+                    }
+                    processRequests();
+                }
+                if (key.isValid() && key.isWritable()){
+                    flush();
+                    updateInterest();
+                }
+            } catch (IOException e){ // client is gone
+                close();
+            }
+        }
+
+        // starts evaluations for complete lines in input buffer, while limit allows it
+        private void processRequests(){
+            input.flip();
+            int lineStart = input.position();
+            paused = false;
+            for (int i = lineStart; i < input.limit(); i++){
+                // when client has closed its output, last request can be not terminated by line break
+                boolean lastUnterminated = inputClosed && i == input.limit() - 1 && input.get(i) != '\n';
+                if (input.get(i) != '\n' && !lastUnterminated){
+                    continue;
+                }
+                if (EvaluationServer.this.evaluationsInFlight >= maxEvaluationsInFlight){ // limit is server-wide
+                    paused = true;
+                    pausedConnections.add(this);
+                    break;
+                }
+                int lineEnd = lastUnterminated ? i + 1 : i;
+                String request = new String(input.array(), lineStart, lineEnd - lineStart, StandardCharsets.UTF_8);
+                lineStart = i + 1;
+                if (request.isBlank()){
+                    continue;
+                }
+                String error = startEvaluation(this, nextRequestIndex++, request);
+                if (error != null){
+                    send(error);
+                }
+            }
+            input.position(lineStart);
+            input.compact();
+            if (!paused && input.position() > MAX_REQUEST_LENGTH){
+                send(nextRequestIndex + "\terror: request is too long\n");
+                inputClosed = true;
+                input.clear();
+            }
+            updateInterest();
+        }
+
+        // response is written right away if possible, the rest is written when channel becomes writable
+        private void send(String response){
+            if (!key.isValid()){ // client is gone
+                return;
+            }
+            byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+            if (output.remaining() + bytes.length > output.capacity()){
+                ByteBuffer newOutput = ByteBuffer.allocate(Math.max(2 * output.capacity(),
+                        output.remaining() + bytes.length));
+                newOutput.put(output);
+                newOutput.flip();
+                output = newOutput;
+            }
+            output.compact();
+            output.put(bytes);
+            output.flip();
+            try {
+                flush();
+            } catch (IOException e){
+                close();
+            }
+        }
+
+        private void flush() throws IOException {
+            if (!key.isValid()){
+                return;
+            }
+            if (output.hasRemaining()){
+                channel.write(output);
+            }
+        }
+
+        private void updateInterest(){
+            if (!key.isValid()){
+                return;
+            }
+            // all requests are read and all responses are written
+            if (inputClosed && !paused && pendingEvaluations == 0 && !output.hasRemaining()){
+                close();
+                return;
+            }
+            int ops = output.hasRemaining() ? SelectionKey.OP_WRITE : 0;
+            if (!paused && !inputClosed){
+                ops |= SelectionKey.OP_READ;
+            }
+            key.interestOps(ops);
+        }
+
+        private void close(){
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // nothing to do, connection is closed anyway
+            }
+        }
+    }
+
+    private static class Response {
+        private final Connection connection;
+        private final Deadline deadline; // null if request has no deadline
+        private final String text;
+
+        private Response(Connection connection, Deadline deadline, String text){
+            this.connection = connection;
+            this.deadline = deadline;
+            this.text = text;
+        }
+    }
+
+    private static class Deadline {
+        private final long time;
+        private final CompletableFuture<Double> result;
+
+        private Deadline(long time, CompletableFuture<Double> result){
+            this.time = time;
+            this.result = result;
+        }
+    }
+}
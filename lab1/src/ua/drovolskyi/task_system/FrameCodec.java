@@ -0,0 +1,62 @@
+package ua.drovolskyi.task_system;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.locks.Lock;
+
+/*
+    Binary protocol, through which tasks report results to manager.
+    Frame: | int length | int taskId | int status | payload |,
+    where length is number of bytes after length field, status is returning code from ResultSink,
+    and payload is double result (only for successfully finished task).
+    Worker process sends frame with CANCELLED status for cancelled task, that won't report result (see WorkerMain).
+    Many tasks can write frames into one channel, frames are never interleaved: every writer of channel
+    uses the same lock. It is Lock, not monitor of channel, so virtual thread, that is blocked in write,
+    doesn't pin its carrier thread
+ */
+public class FrameCodec {
+    public static final int LENGTH_FIELD_SIZE = 4;
+    public static final int HEADER_SIZE = 8; // taskId + status
+    public static final int MAX_FRAME_SIZE = LENGTH_FIELD_SIZE + HEADER_SIZE + 8;
+    public static final int CANCELLED = -1; // status, it isn't returning code of ResultSink
+
+    // every writing thread has its own buffer, so writing of frame doesn't allocate memory
+    private static final ThreadLocal<ByteBuffer> WRITE_BUFFER =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(MAX_FRAME_SIZE));
+
+    public static void writeResult(WritableByteChannel channel, Lock writeLock, int taskId, double result)
+            throws IOException {
+        ByteBuffer buf = WRITE_BUFFER.get();
+        buf.clear();
+        buf.putInt(HEADER_SIZE + 8);
+        buf.putInt(taskId);
+        buf.putInt(ResultSink.SUCCESS);
+        buf.putDouble(result);
+        buf.flip();
+        writeFrame(channel, writeLock, buf);
+    }
+
+    public static void writeFailure(WritableByteChannel channel, Lock writeLock, int taskId, int failureId)
+            throws IOException {
+        ByteBuffer buf = WRITE_BUFFER.get();
+        buf.clear();
+        buf.putInt(HEADER_SIZE);
+        buf.putInt(taskId);
+        buf.putInt(failureId);
+        buf.flip();
+        writeFrame(channel, writeLock, buf);
+    }
+
+    private static void writeFrame(WritableByteChannel channel, Lock writeLock, ByteBuffer buf) throws IOException {
+        // whole frame is written under lock, so frames of different tasks are not mixed
+        writeLock.lock();
+        try {
+            while(buf.hasRemaining()) {
+                channel.write(buf);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+}
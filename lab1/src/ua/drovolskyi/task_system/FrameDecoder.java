@@ -0,0 +1,71 @@
+package ua.drovolskyi.task_system;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/*
+    Reads frames (see FrameCodec) from channel. One read() may return several frames or only part of frame,
+    so bytes are accumulated in buffer until whole frame is received.
+    Buffer is reused, so steady-state reading doesn't allocate memory
+ */
+public class FrameDecoder {
+    private final ByteBuffer buf;
+
+    public FrameDecoder(int bufferSize){
+        if (bufferSize < FrameCodec.MAX_FRAME_SIZE){
+            throw new IllegalArgumentException("bufferSize must be >= " + FrameCodec.MAX_FRAME_SIZE);
+        }
+        buf = ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    // drops received bytes, so decoder can be used for other channel
+    public void reset(){
+        buf.clear();
+    }
+
+    /*
+        Reads available bytes from non-blocking channel and gives every complete frame to handler.
+        Returns number of processed frames, or -1 if end of stream is reached.
+        If channel has more bytes than buffer can hold, they will be read by next call
+        (Selector reports channel as readable again)
+     */
+    public int read(ReadableByteChannel channel, FrameHandler handler) throws IOException {
+        int bytesRead = channel.read(buf);
+        if (bytesRead < 0){
+            return -1;
+        }
+
+        int framesNumber = 0;
+        buf.flip(); // switch buffer from writing to reading mode
+        while (buf.remaining() >= FrameCodec.LENGTH_FIELD_SIZE){
+            int length = buf.getInt(buf.position());
+            if (length < FrameCodec.HEADER_SIZE || length > buf.capacity() - FrameCodec.LENGTH_FIELD_SIZE){
+                throw new IOException("Corrupted frame, length = " + length);
+            }
+            if (buf.remaining() < FrameCodec.LENGTH_FIELD_SIZE + length){
+                break; // frame isn't received completely yet
+            }
+
+            int frameEnd = buf.position() + FrameCodec.LENGTH_FIELD_SIZE + length;
+            buf.getInt(); // length
+            int taskId = buf.getInt();
+            int status = buf.getInt();
+
+            // handler sees only payload of current frame
+            int limit = buf.limit();
+            buf.limit(frameEnd);
+            handler.onFrame(taskId, status, buf);
+            buf.limit(limit);
+            buf.position(frameEnd);
+            framesNumber++;
+        }
+        buf.compact(); // move incomplete frame to beginning of buffer, switch to writing mode
+        return framesNumber;
+    }
+
+    public interface FrameHandler {
+        // payload is positioned at first byte of payload, and its limit is end of frame
+        void onFrame(int taskId, int status, ByteBuffer payload);
+    }
+}
@@ -0,0 +1,28 @@
+package ua.drovolskyi.task_system;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.locks.Lock;
+
+// sends result of task as frame (see FrameCodec), channel can be shared by many tasks, if they share writeLock too
+public class FrameResultSink implements ResultSink {
+    private final WritableByteChannel channel;
+    private final Lock writeLock;
+    private final int taskId;
+
+    public FrameResultSink(WritableByteChannel channel, Lock writeLock, int taskId){
+        this.channel = channel;
+        this.writeLock = writeLock;
+        this.taskId = taskId;
+    }
+
+    @Override
+    public void sendResult(double result) throws IOException {
+        FrameCodec.writeResult(channel, writeLock, taskId, result);
+    }
+
+    @Override
+    public void sendFailure(int failureId) throws IOException {
+        FrameCodec.writeFailure(channel, writeLock, taskId, failureId);
+    }
+}
@@ -0,0 +1,144 @@
+package ua.drovolskyi.task_system;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+    Metrics of one function (see Metrics.function()):
+     - latency of every attempt and of whole task (all attempts and backoff delays)
+     - number of attempts by their outcome (success, soft fail, hard fail);
+       attempt, that is interrupted by timeout, is counted as soft fail
+    Recording is lock-free and doesn't allocate
+ */
+public class FunctionMetrics implements FunctionMetricsMXBean {
+    private final String functionName;
+    private final LatencyHistogram attemptLatency = new LatencyHistogram();
+    private final LatencyHistogram taskLatency = new LatencyHistogram();
+    private final LongAdder successfulAttempts = new LongAdder();
+    private final LongAdder softFailedAttempts = new LongAdder();
+    private final LongAdder hardFailedAttempts = new LongAdder();
+
+    FunctionMetrics(String functionName){
+        this.functionName = functionName;
+    }
+
+    // returningCode - one of codes from ResultSink
+    public void recordAttempt(long latencyNanos, int returningCode){
+        attemptLatency.record(latencyNanos);
+        countOutcome(returningCode);
+    }
+
+    // attempt, that is abandoned (e.g. because of timeout), its latency is unknown
+    public void recordAbandonedAttempt(){
+        softFailedAttempts.increment();
+    }
+
+    public void recordTask(long latencyNanos){
+        taskLatency.record(latencyNanos);
+    }
+
+    private void countOutcome(int returningCode){
+        switch (returningCode){
+            case ResultSink.SUCCESS:
+                successfulAttempts.increment();
+                break;
+            case ResultSink.SOFT_FAIL:
+                softFailedAttempts.increment();
+                break;
+            case ResultSink.HARD_FAIL:
+                hardFailedAttempts.increment();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown returning code: " + returningCode);
+        }
+    }
+
+    public LatencyHistogram getAttemptLatency() {
+        return attemptLatency;
+    }
+
+    public LatencyHistogram getTaskLatency() {
+        return taskLatency;
+    }
+
+    @Override
+    public String getFunctionName() {
+        return functionName;
+    }
+
+    @Override
+    public long getTasks() {
+        return taskLatency.getCount();
+    }
+
+    @Override
+    public long getAttempts() {
+        return successfulAttempts.sum() + softFailedAttempts.sum() + hardFailedAttempts.sum();
+    }
+
+    @Override
+    public long getSuccessfulAttempts() {
+        return successfulAttempts.sum();
+    }
+
+    @Override
+    public long getSoftFailedAttempts() {
+        return softFailedAttempts.sum();
+    }
+
+    @Override
+    public long getHardFailedAttempts() {
+        return hardFailedAttempts.sum();
+    }
+
+    @Override
+    public double getSoftFailRate() {
+        long attempts = getAttempts();
+        return attempts == 0 ? 0 : (double)softFailedAttempts.sum() / attempts;
+    }
+
+    @Override
+    public double getHardFailRate() {
+        long attempts = getAttempts();
+        return attempts == 0 ? 0 : (double)hardFailedAttempts.sum() / attempts;
+    }
+
+    @Override
+    public double getAttemptLatencyMeanMillis() {
+        return Metrics.toMillis(attemptLatency.getMeanNanos());
+    }
+
+    @Override
+    public double getAttemptLatencyP50Millis() {
+        return Metrics.toMillis(attemptLatency.getPercentileNanos(50));
+    }
+
+    @Override
+    public double getAttemptLatencyP99Millis() {
+        return Metrics.toMillis(attemptLatency.getPercentileNanos(99));
+    }
+
+    @Override
+    public double getAttemptLatencyMaxMillis() {
+        return Metrics.toMillis(attemptLatency.getMaxNanos());
+    }
+
+    @Override
+    public double getTaskLatencyMeanMillis() {
+        return Metrics.toMillis(taskLatency.getMeanNanos());
+    }
+
+    @Override
+    public double getTaskLatencyP50Millis() {
+        return Metrics.toMillis(taskLatency.getPercentileNanos(50));
+    }
+
+    @Override
+    public double getTaskLatencyP99Millis() {
+        return Metrics.toMillis(taskLatency.getPercentileNanos(99));
+    }
+
+    @Override
+    public double getTaskLatencyMaxMillis() {
+        return Metrics.toMillis(taskLatency.getMaxNanos());
+    }
+}
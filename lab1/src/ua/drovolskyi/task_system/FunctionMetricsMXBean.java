@@ -0,0 +1,36 @@
+package ua.drovolskyi.task_system;
+
+// metrics of one function, that are exposed through JMX (see FunctionMetrics)
+public interface FunctionMetricsMXBean {
+    String getFunctionName();
+
+    long getTasks();
+
+    long getAttempts();
+
+    long getSuccessfulAttempts();
+
+    long getSoftFailedAttempts();
+
+    long getHardFailedAttempts();
+
+    double getSoftFailRate();
+
+    double getHardFailRate();
+
+    double getAttemptLatencyMeanMillis();
+
+    double getAttemptLatencyP50Millis();
+
+    double getAttemptLatencyP99Millis();
+
+    double getAttemptLatencyMaxMillis();
+
+    double getTaskLatencyMeanMillis();
+
+    double getTaskLatencyP50Millis();
+
+    double getTaskLatencyP99Millis();
+
+    double getTaskLatencyMaxMillis();
+}
@@ -0,0 +1,57 @@
+package ua.drovolskyi.task_system;
+
+import java.util.Optional;
+import java.util.ServiceLoader;
+import java.util.function.Function;
+
+/*
+    Source of functions, that are computed by tasks (f and g by default).
+    Provider is chosen by spec "<provider name>[:<argument>]" (see load()). Built-in providers are
+     - "trial" - f and g from lab1.jar (see TrialFunctions), it is default one
+     - "synthetic:<profiles file>" - functions with configurable latency and fails (see SyntheticFunctionProvider)
+    Other providers can be plugged in through ServiceLoader: jar with implementation of Factory must list it in
+    META-INF/services/ua.drovolskyi.task_system.FunctionProvider$Factory.
+    Spec is plain string, so it can be passed to worker processes too (see ProcessWorkerPool)
+ */
+public interface FunctionProvider {
+    String DEFAULT_SPEC = "trial";
+
+    // throws IllegalArgumentException if there is no such function
+    Function<Integer, Optional<Optional<Double>>> getFunction(String name);
+
+    // creates provider by spec; throws IllegalArgumentException if spec is malformed or provider is unknown
+    static FunctionProvider load(String spec){
+        int separator = spec.indexOf(':');
+        String name = separator == -1 ? spec : spec.substring(0, separator);
+        String argument = separator == -1 ? null : spec.substring(separator + 1);
+
+        switch (name){
+            case "trial":
+                if (argument != null){
+                    throw new IllegalArgumentException("Provider 'trial' has no argument");
+                }
+                return TrialFunctions.PROVIDER;
+            case "synthetic":
+                if (argument == null){
+                    throw new IllegalArgumentException("Usage is 'synthetic:<profiles file>'");
+                }
+                return SyntheticFunctionProvider.fromFile(argument);
+            default:
+                for (Factory factory : ServiceLoader.load(Factory.class)){
+                    if (factory.getName().equals(name)){
+                        return factory.create(argument);
+                    }
+                }
+                throw new IllegalArgumentException("Unknown function provider: " + name);
+        }
+    }
+
+
+    // plugged in provider (see ServiceLoader), it must have public constructor without arguments
+    interface Factory {
+        String getName();
+
+        // argument is part of spec after ':', or null if there is no it
+        FunctionProvider create(String argument);
+    }
+}
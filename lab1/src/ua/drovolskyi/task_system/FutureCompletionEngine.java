@@ -0,0 +1,79 @@
+package ua.drovolskyi.task_system;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/*
+    In-process backend without pipes: task hands its result over a blocking queue.
+    TaskInfo is still filled in the thread that calls await(), as it is done by PipeCompletionEngine
+ */
+public class FutureCompletionEngine implements CompletionEngine {
+    private static final Completion WAKEUP = new Completion(null, 0, 0);
+    private final LinkedBlockingQueue<Completion> completions = new LinkedBlockingQueue<>();
+
+    @Override
+    public ResultSink register(TaskInfo taskInfo) {
+        return new ResultSink() {
+            @Override
+            public void sendResult(double result) {
+                completions.add(new Completion(taskInfo, SUCCESS, result));
+            }
+
+            @Override
+            public void sendFailure(int failureId) {
+                completions.add(new Completion(taskInfo, failureId, 0));
+            }
+        };
+    }
+
+    @Override
+    public int await(long timeoutMillis) {
+        Completion completion;
+        try {
+            completion = timeoutMillis == 0 ?
+                    completions.take() : completions.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 0;
+        }
+        Metrics.GLOBAL.recordSelectorWakeup();
+
+        int finishedTasks = 0;
+        while (completion != null){
+            if (completion != WAKEUP){
+                completion.taskInfo.finish(completion.returningCode, completion.result);
+                finishedTasks++;
+            }
+            completion = completions.poll();
+        }
+        return finishedTasks;
+    }
+
+    @Override
+    public void wakeup() {
+        completions.add(WAKEUP);
+    }
+
+    @Override
+    public boolean reset() {
+        completions.clear();
+        return true;
+    }
+
+    @Override
+    public void close() {
+        completions.clear();
+    }
+
+    private static class Completion {
+        private final TaskInfo taskInfo;
+        private final int returningCode;
+        private final double result;
+
+        private Completion(TaskInfo taskInfo, int returningCode, double result){
+            this.taskInfo = taskInfo;
+            this.returningCode = returningCode;
+            this.result = result;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package ua.drovolskyi.task_system;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+    Histogram of latencies (in nanoseconds) with power-of-two buckets:
+    bucket i counts latencies in [2^(i-1), 2^i), bucket 0 counts zero latencies.
+    record() doesn't allocate and doesn't lock, so it can be called on hot path from any thread.
+    Percentiles are estimated by upper bound of bucket, so they are accurate up to factor of 2
+ */
+public class LatencyHistogram {
+    private static final int BUCKETS_NUMBER = 64;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS_NUMBER);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong(0);
+
+    public void record(long latencyNanos){
+        if (latencyNanos < 0){
+            latencyNanos = 0; // System.nanoTime() isn't guaranteed to be monotonic on all platforms
+        }
+        buckets.incrementAndGet(BUCKETS_NUMBER - Long.numberOfLeadingZeros(latencyNanos));
+        count.increment();
+        sum.add(latencyNanos);
+
+        long currentMax = max.get();
+        while (latencyNanos > currentMax && !max.compareAndSet(currentMax, latencyNanos)){
+            currentMax = max.get();
+        }
+    }
+
+    public long getCount(){
+        return count.sum();
+    }
+
+    public double getMeanNanos(){
+        long samples = count.sum();
+        return samples == 0 ? 0 : (double)sum.sum() / samples;
+    }
+
+    public long getMaxNanos(){
+        return max.get();
+    }
+
+    // percentile in [0, 100]; returns upper bound of bucket, that contains it (0 if there are no samples)
+    public long getPercentileNanos(double percentile){
+        if (percentile < 0 || percentile > 100){
+            throw new IllegalArgumentException("percentile must be in [0, 100]");
+        }
+        long[] snapshot = new long[BUCKETS_NUMBER];
+        long samples = 0;
+        for (int i = 0; i < BUCKETS_NUMBER; i++){
+            snapshot[i] = buckets.get(i);
+            samples += snapshot[i];
+        }
+        if (samples == 0){
+            return 0;
+        }
+
+        long rank = Math.max((long)Math.ceil(percentile / 100 * samples), 1);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS_NUMBER; i++){
+            seen += snapshot[i];
+            if (seen >= rank){
+                return i == 0 ? 0 : Math.min(getBucketUpperBound(i), getMaxNanos());
+            }
+        }
+        return getMaxNanos();
+    }
+
+    private static long getBucketUpperBound(int bucket){
+        return bucket == BUCKETS_NUMBER - 1 ? Long.MAX_VALUE : (1L << bucket) - 1;
+    }
+}
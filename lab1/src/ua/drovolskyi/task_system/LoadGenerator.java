@@ -0,0 +1,203 @@
+package ua.drovolskyi.task_system;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+    Open-loop load generator: starts evaluations of graph at target rate, independently of how fast they
+    are finished (like many independent clients do), and reports achieved throughput and latency percentiles.
+    Latency is measured from time, when evaluation had to be started by schedule, not when it was actually
+    started, so delays of generator itself aren't hidden (coordinated omission).
+    If maxEvaluationsInFlight evaluations are in flight, next ones are dropped (and counted), so overloaded
+    system can't exhaust memory of generator
+ */
+public class LoadGenerator {
+    private final EvaluationGraph graph;
+    private final ExecutorService workers;
+    private final double ratePerSecond;
+    private final long deadlineMillis; // 0 means that there is no deadline
+    private final int maxEvaluationsInFlight;
+
+    public LoadGenerator(EvaluationGraph graph, ExecutorService workers, double ratePerSecond,
+                         long deadlineMillis, int maxEvaluationsInFlight){
+        if (!(ratePerSecond > 0)){
+            throw new IllegalArgumentException("ratePerSecond must be > 0");
+        }
+        if (deadlineMillis < 0){
+            throw new IllegalArgumentException("deadlineMillis must be >= 0");
+        }
+        if (maxEvaluationsInFlight <= 0){
+            throw new IllegalArgumentException("maxEvaluationsInFlight must be > 0");
+        }
+        this.graph = graph;
+        this.workers = workers;
+        this.ratePerSecond = ratePerSecond;
+        this.deadlineMillis = deadlineMillis;
+        this.maxEvaluationsInFlight = maxEvaluationsInFlight;
+    }
+
+    // x values are 0, 1, ..., xRange - 1, 0, 1, ...; returns when all started evaluations are finished
+    public Report run(long durationMillis, int xRange){
+        if (durationMillis <= 0 || xRange <= 0){
+            throw new IllegalArgumentException("durationMillis and xRange must be > 0");
+        }
+        int requestsNumber = (int)Math.max(Math.round(ratePerSecond * durationMillis / 1000), 1);
+        double intervalNanos = 1e9 / ratePerSecond;
+        long[] latencies = new long[requestsNumber]; // every evaluation writes only its own element
+        Arrays.fill(latencies, -1);
+        Semaphore inFlight = new Semaphore(maxEvaluationsInFlight);
+        Report report = new Report(ratePerSecond, durationMillis, requestsNumber);
+
+        long startTime = System.nanoTime();
+        for (int i = 0; i < requestsNumber; i++){
+            long scheduledTime = startTime + (long)(i * intervalNanos);
+            long delay;
+            while ((delay = scheduledTime - System.nanoTime()) > 0){
+                LockSupport.parkNanos(delay);
+            }
+
+            if (!inFlight.tryAcquire()){
+                report.dropped.increment();
+                continue;
+            }
+            int index = i;
+            start(i % xRange).whenComplete((value, exception) -> {
+                long finishTime = System.nanoTime();
+                latencies[index] = finishTime - scheduledTime;
+                report.lastFinishTime.accumulateAndGet(finishTime, Math::max);
+                Throwable cause = exception instanceof CompletionException ? exception.getCause() : exception;
+                if (cause == null){
+                    report.computed.increment();
+                }
+                else if (cause instanceof TimeoutException){
+                    report.timedOut.increment();
+                }
+                else if (cause instanceof RejectedExecutionException){
+                    report.rejected.increment();
+                }
+                else if (!(cause instanceof CancellationException)){ // cancelled through control endpoint
+                    report.failed.increment();
+                }
+                inFlight.release();
+            });
+        }
+        inFlight.acquireUninterruptibly(maxEvaluationsInFlight); // all evaluations are finished
+        report.finish(startTime, latencies);
+        return report;
+    }
+
+    // returned future is completed after tasks are cancelled and TaskInfos of timed out evaluation are updated
+    private CompletableFuture<Double> start(int x){
+        List<TaskInfo> taskInfos = graph.createTaskInfos();
+        CompletableFuture<Double> result = graph.start(x, taskInfos, workers);
+        if (deadlineMillis > 0){
+            result.orTimeout(deadlineMillis, TimeUnit.MILLISECONDS);
+        }
+        return result.whenComplete((value, exception) -> {
+            if (exception instanceof TimeoutException){
+                for (TaskInfo info : taskInfos){
+                    info.timeOut();
+                }
+            }
+        });
+    }
+
+
+    public static class Report {
+        private final double targetRate;
+        private final long durationMillis;
+        private final int requestsNumber;
+        private final LongAdder computed = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder timedOut = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder dropped = new LongAdder();
+        private final AtomicLong lastFinishTime = new AtomicLong(Long.MIN_VALUE);
+        private long elapsedNanos;
+        private long[] sortedLatencies; // of finished evaluations
+
+        private Report(double targetRate, long durationMillis, int requestsNumber){
+            this.targetRate = targetRate;
+            this.durationMillis = durationMillis;
+            this.requestsNumber = requestsNumber;
+        }
+
+        private void finish(long startTime, long[] latencies){
+            long endTime = lastFinishTime.get() == Long.MIN_VALUE ? System.nanoTime() : lastFinishTime.get();
+            elapsedNanos = Math.max(endTime - startTime, 1);
+            sortedLatencies = Arrays.stream(latencies).filter(latency -> latency >= 0).sorted().toArray();
+        }
+
+        public long getFinishedNumber(){
+            return sortedLatencies.length;
+        }
+
+        public long getComputedNumber(){
+            return computed.sum();
+        }
+
+        public long getFailedNumber(){
+            return failed.sum();
+        }
+
+        public long getTimedOutNumber(){
+            return timedOut.sum();
+        }
+
+        // rejected by executor (see AdaptiveExecutor)
+        public long getRejectedNumber(){
+            return rejected.sum();
+        }
+
+        public long getDroppedNumber(){
+            return dropped.sum();
+        }
+
+        // finished evaluations per second, from start of load to last finished evaluation
+        public double getThroughput(){
+            return sortedLatencies.length / (elapsedNanos / 1e9);
+        }
+
+        // percentile in [0, 100] of latencies of finished evaluations (nearest rank), 0 if there are no ones
+        public long getLatencyPercentileNanos(double percentile){
+            if (percentile < 0 || percentile > 100){
+                throw new IllegalArgumentException("percentile must be in [0, 100]");
+            }
+            if (sortedLatencies.length == 0){
+                return 0;
+            }
+            int rank = (int)Math.max(Math.ceil(percentile / 100 * sortedLatencies.length), 1);
+            return sortedLatencies[rank - 1];
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "Target rate %.1f/sec for %d ms: %d requests, %d dropped%n" +
+                            "Achieved throughput %.1f results/sec%n" +
+                            "Computed %d, failed %d, timed out %d, rejected %d%n" +
+                            "Latency (ms): p50 = %.1f, p90 = %.1f, p99 = %.1f, p99.9 = %.1f, max = %.1f",
+                    targetRate, durationMillis, requestsNumber, getDroppedNumber(),
+                    getThroughput(),
+                    getComputedNumber(), getFailedNumber(), getTimedOutNumber(), getRejectedNumber(),
+                    toMillis(getLatencyPercentileNanos(50)), toMillis(getLatencyPercentileNanos(90)),
+                    toMillis(getLatencyPercentileNanos(99)), toMillis(getLatencyPercentileNanos(99.9)),
+                    toMillis(getLatencyPercentileNanos(100)));
+        }
+
+        private static double toMillis(long nanos){
+            return nanos / 1e6;
+        }
+    }
+}
@@ -1,37 +1,86 @@
 package ua.drovolskyi.task_system;
 
 import java.io.IOException;
-import java.nio.ByteBuffer;
-import java.nio.channels.Pipe;
-import java.nio.channels.SelectionKey;
-import java.nio.channels.Selector;
 import java.util.*;
-import java.util.function.Function;
-import os.lab1.compfuncs.advanced.DoubleOps;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 public class Manager {
+    private static final long TASK_STOP_TIMEOUT_MILLIS = 1000;
+    // engine of one manager is reused by next ones, so steady-state evaluation doesn't open Selector and pipe
+    private static final CompletionEngine.Factory DEFAULT_ENGINES =
+            CompletionEngine.Factory.reusing(MultiplexedCompletionEngine::new);
     private int x;
     Status status = Status.COMPUTATIONS_NOT_STARTED;
     private Thread cancellationWaitingThread;
-    private TaskInfo infoTask1 = new TaskInfo(5);
-    private TaskInfo infoTask2 = new TaskInfo(5);
-    private Function<Integer, Optional<Optional<Double>>> f;
-    private Function<Integer, Optional<Optional<Double>>> g;
-    private Pipe pipeTask1;
-    private Pipe pipeTask2;
+    private final EvaluationGraph graph;
+    private final List<TaskInfo> taskInfos = new ArrayList<>();
+    private volatile CompletionEngine engine;
+    private final Executor taskExecutor;
+    private final CompletionEngine.Factory engineFactory;
+    private final List<TaskHandle> tasks = new ArrayList<>();
+    private final ProcessWorkerPool workerPool;
+    private final List<ResultSink> remoteSinks = new ArrayList<>(); // of tasks, that are computed by workerPool
+    private final List<Integer> remoteTaskIds = new ArrayList<>(); // ids of them in workerPool
+    private volatile boolean cancelled = false;
+    private ControlServer controlServer;
 
 
     public Manager(){
+        this(EvaluationGraph.sumOfTrialFunctions());
+    }
+
+    // tasks are computed by pre-warmed pool, that is shared by all managers, with adaptive limit in front of it
+    public Manager(EvaluationGraph graph){
+        this(graph, TaskExecutors.shared(), DEFAULT_ENGINES);
+    }
+
+    /*
+        taskExecutor runs tasks (one for every component of graph),
+        engineFactory creates channel, through which tasks report results to manager
+     */
+    public Manager(EvaluationGraph graph, Executor taskExecutor, CompletionEngine.Factory engineFactory){
+        this(graph, taskExecutor, engineFactory, null);
+    }
+
+    // components are computed by worker processes of pool (functions are passed by names of components)
+    public Manager(EvaluationGraph graph, ProcessWorkerPool workerPool){
+        this(graph, null, MultiplexedCompletionEngine::new, workerPool);
+    }
+
+    private Manager(EvaluationGraph graph, Executor taskExecutor, CompletionEngine.Factory engineFactory,
+                    ProcessWorkerPool workerPool){
+        this.graph = graph;
+        this.taskExecutor = taskExecutor;
+        this.engineFactory = engineFactory;
+        this.workerPool = workerPool;
+        for (EvaluationGraph.Component component : graph.getComponents()){
+            taskInfos.add(new TaskInfo(component.getRetryPolicy().getMaxAttempts()));
+        }
+    }
+
+
+    // evaluation can be inspected and cancelled through given server (it isn't closed by manager)
+    public void setControlServer(ControlServer controlServer){
+        this.controlServer = controlServer;
+    }
+
+    // interactive mode: x is read from console, result is printed
+    public void run(){
+        run(0);
+    }
+
+    // timeoutMillis - deadline of computations after x is entered (0 - no deadline)
+    public void run(long timeoutMillis){
         // add termination hook
         Runtime current = Runtime.getRuntime();
         current.addShutdownHook(new Thread(()->{
 
             try{
-                if (pipeTask1 != null){
-                    pipeTask1.source().close();
-                }
-                if (pipeTask2 != null){
-                    pipeTask2.source().close();
+                if (engine != null){
+                    engine.close();
                 }
             }
             catch (IOException e) {
@@ -45,42 +94,14 @@ public class Manager {
                     break;
                 }
                 case COMPUTATIONS_STARTED: { // calculating is in progress
-                    System.out.println("Computations cancelled:");
-                    switch (infoTask1.getStatus()){
-                        case STARTED:
-                            System.out.println("f(x) - not finished");
-                            break;
-                        case FINISHED_SOFTFAIL:
-                            System.out.println("f(x) - soft fail, " +
-                                    "max number of attempts reached (" + infoTask1.getMaxComputationAttempts() +")");
-                            break;
-                        case FINISHED_HARDFAIL:
-                            System.out.println("f(x) - hard fail");
-                            break;
-                        case FINISHED_SUCCESSFULLY:
-                            System.out.println("f(x) - computed");
-                            break;
-                    }
-
-                    switch (infoTask2.getStatus()){
-                        case STARTED:
-                            System.out.println("g(x) - not finished");
-                            break;
-                        case FINISHED_SOFTFAIL:
-                            System.out.println("g(x) - soft fail, " +
-                                    "max number of attempts reached (" + infoTask2.getMaxComputationAttempts() +")");
-                            break;
-                        case FINISHED_HARDFAIL:
-                            System.out.println("g(x) - hard fail");
-                            break;
-                        case FINISHED_SUCCESSFULLY:
-                            System.out.println("g(x) - computed");
-                            break;
-                    }
+                    printCancellationInfo();
                     break;
                 }
-                case RESULT_CALCULATED_AND_PRINTED:{
-                    // nothing need to print, because result is already printed
+                case COMPUTATIONS_TIMED_OUT:
+                case RESULT_CALCULATED:
+                case RESULT_CALCULATED_AND_PRINTED:
+                case COMPUTATIONS_CANCELLED:{
+                    // nothing need to print, because result (or cancellation info) is already printed
                     break;
                 }
             }
@@ -93,107 +114,202 @@ public class Manager {
                 String input = scanner.next();
 
                 if (input.trim().equalsIgnoreCase("q")){
-                    scanner.close();
-                    System.exit(0);
+                    cancel();
+                    break;
                 }
             }
         });
         cancellationWaitingThread.setDaemon(true);
 
-        // create functions for tasks
-        f = (Integer x) ->{
-            try {
-                return DoubleOps.trialF(x);
-            } catch (InterruptedException e) {
-                throw new RuntimeException(e);
-            }
-        };
-
-        g = (Integer x) ->{
-            try {
-                return DoubleOps.trialG(x);
-            } catch (InterruptedException e) {
-                throw new RuntimeException(e);
-            }
-        };
-    }
-
-
-    public void run(){
         // possibility of exit is provided both by scanX() and by cancellation-waiting thread
         scanX();
         cancellationWaitingThread.start();
 
+        EvaluationResult result = evaluate(x, timeoutMillis);
+        System.out.println(result);
+        status = result.getOutcome() == EvaluationResult.Outcome.CANCELLED ?
+                Status.COMPUTATIONS_CANCELLED : Status.RESULT_CALCULATED_AND_PRINTED;
+    }
 
-        try {
-            Selector selector = Selector.open();
-            pipeTask1 = Pipe.open();
-            pipeTask2 = Pipe.open();
-
-            Pipe.SourceChannel sourceChannelTask1 = pipeTask1.source();
-            Pipe.SourceChannel sourceChannelTask2 = pipeTask2.source();
-
-            sourceChannelTask1.configureBlocking(false);
-            sourceChannelTask2.configureBlocking(false);
-
-            SelectionKey keyTask1 = sourceChannelTask1.register(selector, SelectionKey.OP_READ);
-            SelectionKey keyTask2 = sourceChannelTask2.register(selector, SelectionKey.OP_READ);
+    /*
+        Computes graph for x, but not longer than timeoutMillis (0 - no deadline).
+        If deadline expires, tasks that are still computing are stopped and marked as timed out,
+        and result contains states of all components (results of computed ones are available).
+        Manager computes graph only once
+     */
+    public EvaluationResult evaluate(int x, long timeoutMillis){
+        if (timeoutMillis < 0){
+            throw new IllegalArgumentException("timeoutMillis must be >= 0");
+        }
+        if (status != Status.COMPUTATIONS_NOT_STARTED){
+            throw new IllegalStateException("Computations are already started");
+        }
+        this.x = x;
+        long startTime = Metrics.GLOBAL.evaluationStarted();
+        long deadline = startTime + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        RejectedExecutionException rejection = null;
+        long registryId = 0; // 0 until evaluation is registered (ids start from 1)
+        boolean finishRecorded = false;
 
-            // attach ID of task
-            keyTask1.attach(Integer.valueOf(1));
-            keyTask2.attach(Integer.valueOf(2));
+        try {
+            engine = engineFactory.create();
 
-            // create and start task threads
-            Thread threadTask1 = new Thread(new TaskThread(x, f,
-                    infoTask1.getMaxComputationAttempts(), pipeTask1));
-            Thread threadTask2 = new Thread(new TaskThread(x, g,
-                    infoTask2.getMaxComputationAttempts(), pipeTask2));
+            if (controlServer != null){
+                // control connections are served by the same thread and Selector as results, if possible
+                if (engine instanceof MultiplexedCompletionEngine){
+                    controlServer.attach((MultiplexedCompletionEngine)engine);
+                }
+                else{
+                    controlServer.start();
+                }
+            }
 
-            threadTask1.setDaemon(true);
-            threadTask2.setDaemon(true);
+            // create tasks, one for each component of graph
+            for (EvaluationGraph.Component component : graph.getComponents()){
+                TaskInfo info = taskInfos.get(component.getIndex());
+                if (workerPool != null){
+                    remoteSinks.add(engine.register(info));
+                }
+                else{
+                    CancellableResultSink sink = new CancellableResultSink(engine.register(info));
+                    tasks.add(new TaskHandle(new TaskThread(x, component.getFunction(),
+                            component.getRetryPolicy(), component.getMetrics(), info, sink), sink));
+                }
+                info.start();
+            }
 
-            infoTask1.setStatus(TaskInfo.Status.STARTED);
-            infoTask2.setStatus(TaskInfo.Status.STARTED);
+            // future is completed as soon as result is calculated or any component is failed;
+            // tasks of components, that aren't needed anymore (short-circuited branches), are stopped at once
+            CompletableFuture<Double> result = graph.evaluate(taskInfos, this::stopTask);
             status = Status.COMPUTATIONS_STARTED;
+            registryId = EvaluationRegistry.GLOBAL.register(x, graph, taskInfos, this::cancel);
 
-            threadTask1.start();
-            threadTask2.start();
-
+            if (workerPool != null){
+                for (EvaluationGraph.Component component : graph.getComponents()){
+                    remoteTaskIds.add(workerPool.submit(remoteSinks.get(component.getIndex()), component.getName(),
+                            x, component.getRetryPolicy()));
+                }
+            }
+            else{
+                try {
+                    for (TaskHandle task : tasks){
+                        taskExecutor.execute(task);
+                    }
+                } catch (RejectedExecutionException e){ // executor is overloaded, started tasks are stopped below
+                    rejection = e;
+                }
+            }
 
-            int finishedTasks = 0;
-            boolean stop = false;
-            while(!stop && finishedTasks < 2){
-                int readyChannels = selector.selectNow();
-                if (readyChannels == 0){
+            // park until some task is finished, computations are cancelled or deadline expires (no busy waiting)
+            boolean timedOut = false;
+            while(!result.isDone() && !cancelled && rejection == null){
+                if (Thread.currentThread().isInterrupted()){ // engine doesn't park anymore, so it is cancellation
+                    cancel();
+                    break;
+                }
+                if (timeoutMillis == 0){
+                    engine.await(0);
                     continue;
                 }
+                long remainingNanos = deadline - System.nanoTime();
+                if (remainingNanos <= 0){
+                    timedOut = true;
+                    break;
+                }
+                // await(0) waits without timeout, so at least 1 ms is waited
+                engine.await(Math.max(TimeUnit.NANOSECONDS.toMillis(remainingNanos), 1));
+            }
 
-                // read messages from all finished tasks
-                Set<SelectionKey> selectedKeys = selector.selectedKeys();
-                Iterator<SelectionKey> keyIterator = selectedKeys.iterator();
+            // recorded before tasks are stopped, so that latency doesn't include time of stopping them
+            Metrics.GLOBAL.evaluationFinished(startTime);
+            EvaluationRegistry.GLOBAL.unregister(registryId);
+            finishRecorded = true;
 
-                while(keyIterator.hasNext()) {
-                    TaskInfo processedTaskInfo = proceedTaskFinishing(keyIterator.next());
-                    keyIterator.remove();
-                    finishedTasks++;
+            // tasks, that are still computing, aren't needed anymore
+            if (stopTasks() && workerPool == null){
+                engineFactory.release(engine); // no task can send result into it anymore
+            }
+            else{
+                engine.close(); // results of workers (or of task, that doesn't stop) can come later
+            }
 
-                    // if processed task is failed, then we can't calculate result,
-                    // so we don't need wait second task
-                    if (!processedTaskInfo.isFinishedSuccessfully()){
-                        stop = true;
-                        break;
-                    }
+            if (cancelled){
+                status = Status.COMPUTATIONS_CANCELLED;
+                return EvaluationResult.cancelled(EvaluationResult.snapshot(graph, taskInfos));
+            }
+            if (rejection != null){
+                status = Status.RESULT_CALCULATED;
+                return EvaluationResult.rejected(rejection.getMessage(), EvaluationResult.snapshot(graph, taskInfos));
+            }
+            if (timedOut){
+                for (TaskInfo info : taskInfos){
+                    info.timeOut(); // finished tasks keep their results
                 }
+                status = Status.COMPUTATIONS_TIMED_OUT;
+                return EvaluationResult.timedOut(EvaluationResult.snapshot(graph, taskInfos));
             }
 
-            sourceChannelTask1.close();
-            sourceChannelTask2.close();
-
-            calculateAndPrintResult();
+            status = Status.RESULT_CALCULATED;
+            ComponentFailedException failure = EvaluationGraph.getComponentFailure(result);
+            return failure == null ?
+                    EvaluationResult.computed(result.join(), EvaluationResult.snapshot(graph, taskInfos)) :
+                    EvaluationResult.failed(failure, EvaluationResult.snapshot(graph, taskInfos));
 
         } catch (IOException e) {
             throw new RuntimeException(e);
+        } finally {
+            if (!finishRecorded){ // engine or worker pool failed
+                Metrics.GLOBAL.evaluationFinished(startTime);
+                if (registryId != 0){
+                    EvaluationRegistry.GLOBAL.unregister(registryId);
+                }
+            }
+        }
+    }
+
+    /*
+        Cancels computations: tasks are interrupted and run() stops waiting for them.
+        Can be called from any thread
+     */
+    public void cancel(){
+        cancelled = true;
+        CompletionEngine currentEngine = engine;
+        if (currentEngine != null){
+            currentEngine.wakeup();
+        }
+    }
+
+    // interrupts task of component (given by index), if it is still computing
+    private void stopTask(int index){
+        if (taskInfos.get(index).isFinished()){
+            return;
+        }
+        if (workerPool != null){
+            workerPool.cancel(remoteTaskIds.get(index));
+        }
+        else{
+            tasks.get(index).cancel(true);
+        }
+    }
+
+    /*
+        Interrupts tasks, that are still computing, and waits (for bounded time) until they stop.
+        Returns false if some task is still running
+     */
+    private boolean stopTasks(){
+        for (int i = 0; i < taskInfos.size(); i++){
+            stopTask(i);
         }
+        boolean allStopped = true;
+        try {
+            for (TaskHandle task : tasks){
+                allStopped &= task.awaitStopped(TASK_STOP_TIMEOUT_MILLIS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return allStopped;
     }
 
     private void scanX(){
@@ -216,85 +332,20 @@ public class Manager {
         }
     }
 
-    /*
-        This function fills taskInfo after task is finished
-     */
-    private TaskInfo proceedTaskFinishing(SelectionKey key) throws IOException {
-        if (!key.isReadable()){
-            throw new IllegalArgumentException("Task's key must be readable");
-        }
-
-        int taskId = (Integer)(key.attachment());
-        TaskInfo currentTaskInfo = taskId == 1 ? infoTask1 : infoTask2;
-
-        ByteBuffer buf = ByteBuffer.allocate(12);
-
-        // read task result into buffer
-        Pipe.SourceChannel channel = (Pipe.SourceChannel)(key.channel());
-        channel.read(buf);
-        buf.flip(); // switch buffer from writing to reading mode
-
-        // process result & fill taskInfo
-        int returningCode = buf.getInt();
-
-        if (returningCode == 0){
-            currentTaskInfo.setStatus(TaskInfo.Status.FINISHED_SUCCESSFULLY);
-            double result = buf.getDouble();
-            currentTaskInfo.setResult(result);
-        } else if (returningCode == 1){
-            currentTaskInfo.setStatus(TaskInfo.Status.FINISHED_SOFTFAIL);
-        } else if (returningCode == 2){
-            currentTaskInfo.setStatus(TaskInfo.Status.FINISHED_HARDFAIL);
+    private void printCancellationInfo(){
+        System.out.println("Computations cancelled:");
+        for (EvaluationGraph.Component component : graph.getComponents()){
+            System.out.println(taskInfos.get(component.getIndex()).describe(component.getName()));
         }
-
-        /*
-        System.out.println("Task #" + (Integer)key.attachment());
-        System.out.println("Returning code = " + returningCode);
-        if (returningCode == 0){
-            buf.rewind();
-            buf.getDouble();
-            System.out.println("Result = " + currentTaskInfo.getResult() + "\n");
-        }
-         */
-
-        return currentTaskInfo;
     }
 
-    // only this method will print result (except cancellation from user)
-    private void calculateAndPrintResult(){
-        if (infoTask1.isFinishedSuccessfully() &&
-                infoTask2.isFinishedSuccessfully()){
-            double resultF = infoTask1.getResult();
-            double resultG = infoTask2.getResult();
-            double result = resultF + resultG;
-
-            System.out.println("Result = " + result);
-        }
-        else{
-            System.out.println("Computations failed. Reason is: ");
-            if (infoTask1.getStatus() == TaskInfo.Status.FINISHED_SOFTFAIL){
-                System.out.println("f(x) - soft fail, " +
-                        "max number of attempts reached (" + infoTask1.getMaxComputationAttempts() +")");
-            }
-            else if (infoTask1.getStatus() == TaskInfo.Status.FINISHED_HARDFAIL){
-                System.out.println("f(x) - hard fail");
-            }
-            else if (infoTask2.getStatus() == TaskInfo.Status.FINISHED_SOFTFAIL){
-                System.out.println("g(x) - soft fail, " +
-                        "max number of attempts reached (" + infoTask2.getMaxComputationAttempts() +")");
-            }
-            else if (infoTask2.getStatus() == TaskInfo.Status.FINISHED_HARDFAIL){
-                System.out.println("g(x) - hard fail");
-            }
-        }
-        status = Status.RESULT_CALCULATED_AND_PRINTED;
-    }
-
-
 
     public static enum Status {
         COMPUTATIONS_NOT_STARTED,
         COMPUTATIONS_STARTED,
+        COMPUTATIONS_CANCELLED,
+        COMPUTATIONS_TIMED_OUT,
+        RESULT_CALCULATED,
         RESULT_CALCULATED_AND_PRINTED
     }
 }
\ No newline at end of file
@@ -0,0 +1,239 @@
+package ua.drovolskyi.task_system;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/*
+    Metrics of task system (one instance per JVM, see GLOBAL):
+     - latency of evaluations (from start of tasks until result of graph is known) and number of them in flight
+     - queue wait: time between creation of task and start of its execution by executor
+     - selector wakeups: how many times thread, that waits for results of tasks, was woken up
+     - metrics of every function (see FunctionMetrics)
+    Everything is recorded without locks and allocations. Metrics are exposed through JMX
+    (after registerMBeans()) and as periodic text or JSON snapshots (see startReporter())
+ */
+public class Metrics implements MetricsMXBean {
+    public static final Metrics GLOBAL = new Metrics();
+    private static final String DOMAIN = "ua.drovolskyi.task_system";
+
+    private final Map<String, FunctionMetrics> functions = new ConcurrentHashMap<>();
+    private final LatencyHistogram evaluationLatency = new LatencyHistogram();
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+    private final LongAdder evaluationsInFlight = new LongAdder();
+    private final LongAdder selectorWakeups = new LongAdder();
+    private volatile MBeanServer mBeanServer;
+
+    private Metrics(){}
+
+    // returns metrics of function with given name, they are created at first call
+    public FunctionMetrics function(String functionName){
+        FunctionMetrics metrics = functions.get(functionName);
+        if (metrics != null){
+            return metrics;
+        }
+        metrics = functions.computeIfAbsent(functionName, FunctionMetrics::new);
+        MBeanServer server = mBeanServer;
+        if (server != null){
+            register(server, metrics);
+        }
+        return metrics;
+    }
+
+    // returns start time of evaluation, it must be passed to evaluationFinished()
+    public long evaluationStarted(){
+        evaluationsInFlight.increment();
+        return System.nanoTime();
+    }
+
+    public void evaluationFinished(long startTime){
+        evaluationLatency.record(System.nanoTime() - startTime);
+        evaluationsInFlight.decrement();
+    }
+
+    public void recordQueueWait(long waitNanos){
+        queueWait.record(waitNanos);
+    }
+
+    public void recordSelectorWakeup(){
+        selectorWakeups.increment();
+    }
+
+    public LatencyHistogram getEvaluationLatency() {
+        return evaluationLatency;
+    }
+
+    public LatencyHistogram getQueueWait() {
+        return queueWait;
+    }
+
+    // registers this object and metrics of all functions (existing and future ones) in platform MBean server
+    public synchronized void registerMBeans(){
+        if (mBeanServer != null){
+            return;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.registerMBean(this, new ObjectName(DOMAIN + ":type=Metrics"));
+        } catch (JMException e) {
+            throw new RuntimeException(e);
+        }
+        mBeanServer = server;
+        for (FunctionMetrics metrics : functions.values()){
+            register(server, metrics);
+        }
+    }
+
+    private static void register(MBeanServer server, FunctionMetrics metrics){
+        try {
+            ObjectName name = new ObjectName(DOMAIN + ":type=FunctionMetrics,name=" +
+                    ObjectName.quote(metrics.getFunctionName()));
+            if (!server.isRegistered(name)){
+                server.registerMBean(metrics, name);
+            }
+        } catch (InstanceAlreadyExistsException e) {
+            // function() and registerMBeans() registered it at the same time
+        } catch (JMException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // prints snapshot of metrics to out every periodMillis, in daemon thread
+    public void startReporter(long periodMillis, PrintStream out, boolean json){
+        if (periodMillis <= 0){
+            throw new IllegalArgumentException("periodMillis must be > 0");
+        }
+        Thread reporterThread = new Thread(() -> {
+            try {
+                while (true){
+                    Thread.sleep(periodMillis);
+                    out.println(json ? toJson() : toText());
+                }
+            } catch (InterruptedException e) {
+                // reporter is stopped
+            }
+        }, "metrics-reporter");
+        reporterThread.setDaemon(true);
+        reporterThread.start();
+    }
+
+    public String toText(){
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format(Locale.ROOT,
+                "evaluations: %d (in flight %d), latency ms: mean %.3f, p50 %.3f, p99 %.3f, max %.3f; " +
+                        "queue wait ms: mean %.3f, p99 %.3f; selector wakeups: %d",
+                getEvaluations(), getEvaluationsInFlight(), getEvaluationLatencyMeanMillis(),
+                getEvaluationLatencyP50Millis(), getEvaluationLatencyP99Millis(),
+                getEvaluationLatencyMaxMillis(), getQueueWaitMeanMillis(), getQueueWaitP99Millis(),
+                getSelectorWakeups()));
+        for (FunctionMetrics metrics : getFunctions()){
+            builder.append(String.format(Locale.ROOT,
+                    "%n%s(x): tasks %d, attempts %d (soft fail %.2f%%, hard fail %.2f%%), " +
+                            "attempt ms: p50 %.3f, p99 %.3f, max %.3f; task ms: p50 %.3f, p99 %.3f, max %.3f",
+                    metrics.getFunctionName(), metrics.getTasks(), metrics.getAttempts(),
+                    100 * metrics.getSoftFailRate(), 100 * metrics.getHardFailRate(),
+                    metrics.getAttemptLatencyP50Millis(), metrics.getAttemptLatencyP99Millis(),
+                    metrics.getAttemptLatencyMaxMillis(), metrics.getTaskLatencyP50Millis(),
+                    metrics.getTaskLatencyP99Millis(), metrics.getTaskLatencyMaxMillis()));
+        }
+        return builder.toString();
+    }
+
+    // one line of JSON, e.g. for log collectors
+    public String toJson(){
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format(Locale.ROOT,
+                "{\"timestamp\":%d,\"evaluations\":%d,\"evaluationsInFlight\":%d," +
+                        "\"evaluationLatencyMs\":%s,\"queueWaitMs\":%s,\"selectorWakeups\":%d,\"functions\":{",
+                System.currentTimeMillis(), getEvaluations(), getEvaluationsInFlight(),
+                histogramToJson(evaluationLatency), histogramToJson(queueWait), getSelectorWakeups()));
+        List<FunctionMetrics> functionMetrics = getFunctions();
+        for (int i = 0; i < functionMetrics.size(); i++){
+            FunctionMetrics metrics = functionMetrics.get(i);
+            builder.append(String.format(Locale.ROOT,
+                    "%s\"%s\":{\"tasks\":%d,\"attempts\":%d,\"successfulAttempts\":%d," +
+                            "\"softFailedAttempts\":%d,\"hardFailedAttempts\":%d," +
+                            "\"attemptLatencyMs\":%s,\"taskLatencyMs\":%s}",
+                    i == 0 ? "" : ",", escapeJson(metrics.getFunctionName()), metrics.getTasks(),
+                    metrics.getAttempts(), metrics.getSuccessfulAttempts(), metrics.getSoftFailedAttempts(),
+                    metrics.getHardFailedAttempts(), histogramToJson(metrics.getAttemptLatency()),
+                    histogramToJson(metrics.getTaskLatency())));
+        }
+        return builder.append("}}").toString();
+    }
+
+    private List<FunctionMetrics> getFunctions(){
+        List<FunctionMetrics> result = new ArrayList<>(functions.values());
+        result.sort((a, b) -> a.getFunctionName().compareTo(b.getFunctionName()));
+        return result;
+    }
+
+    private static String histogramToJson(LatencyHistogram histogram){
+        return String.format(Locale.ROOT, "{\"count\":%d,\"mean\":%.3f,\"p50\":%.3f,\"p99\":%.3f,\"max\":%.3f}",
+                histogram.getCount(), toMillis(histogram.getMeanNanos()),
+                toMillis(histogram.getPercentileNanos(50)), toMillis(histogram.getPercentileNanos(99)),
+                toMillis(histogram.getMaxNanos()));
+    }
+
+    private static String escapeJson(String s){
+        return s.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    static double toMillis(double nanos){
+        return nanos / 1e6;
+    }
+
+    @Override
+    public long getEvaluations() {
+        return evaluationLatency.getCount();
+    }
+
+    @Override
+    public long getEvaluationsInFlight() {
+        return evaluationsInFlight.sum();
+    }
+
+    @Override
+    public double getEvaluationLatencyMeanMillis() {
+        return toMillis(evaluationLatency.getMeanNanos());
+    }
+
+    @Override
+    public double getEvaluationLatencyP50Millis() {
+        return toMillis(evaluationLatency.getPercentileNanos(50));
+    }
+
+    @Override
+    public double getEvaluationLatencyP99Millis() {
+        return toMillis(evaluationLatency.getPercentileNanos(99));
+    }
+
+    @Override
+    public double getEvaluationLatencyMaxMillis() {
+        return toMillis(evaluationLatency.getMaxNanos());
+    }
+
+    @Override
+    public double getQueueWaitMeanMillis() {
+        return toMillis(queueWait.getMeanNanos());
+    }
+
+    @Override
+    public double getQueueWaitP99Millis() {
+        return toMillis(queueWait.getPercentileNanos(99));
+    }
+
+    @Override
+    public long getSelectorWakeups() {
+        return selectorWakeups.sum();
+    }
+}
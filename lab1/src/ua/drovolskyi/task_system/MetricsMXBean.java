@@ -0,0 +1,22 @@
+package ua.drovolskyi.task_system;
+
+// metrics of whole task system, that are exposed through JMX (see Metrics)
+public interface MetricsMXBean {
+    long getEvaluations();
+
+    long getEvaluationsInFlight();
+
+    double getEvaluationLatencyMeanMillis();
+
+    double getEvaluationLatencyP50Millis();
+
+    double getEvaluationLatencyP99Millis();
+
+    double getEvaluationLatencyMaxMillis();
+
+    double getQueueWaitMeanMillis();
+
+    double getQueueWaitP99Millis();
+
+    long getSelectorWakeups();
+}
@@ -0,0 +1,149 @@
+package ua.drovolskyi.task_system;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+    All tasks report results through one shared Pipe, every frame carries id of task (see FrameCodec).
+    Ids of finished tasks are reused, and read buffer is reused too,
+    so steady-state result path doesn't allocate memory and doesn't create channels.
+    Frames with ids, that aren't registered now, are dropped.
+    Other channels can be served by the same Selector (see addHandler), e.g. control connections
+ */
+public class MultiplexedCompletionEngine implements CompletionEngine, FrameDecoder.FrameHandler {
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final Selector selector;
+    private final Pipe pipe;
+    private final ReentrantLock pipeWriteLock = new ReentrantLock(); // shared by all tasks, see FrameCodec
+    private final FrameDecoder decoder = new FrameDecoder(READ_BUFFER_SIZE); // of shared pipe
+
+    // tasks[id] is task, that is registered with given id; ids of finished tasks are in freeIds stack
+    private TaskInfo[] tasks = new TaskInfo[16];
+    private int[] freeIds = new int[16];
+    private int freeIdsNumber = 0;
+    private int usedIdsNumber = 0;
+    private int finishedTasks = 0;
+
+    public MultiplexedCompletionEngine() throws IOException {
+        selector = Selector.open();
+        pipe = Pipe.open();
+        pipe.source().configureBlocking(false);
+        pipe.source().register(selector, SelectionKey.OP_READ, decoder);
+    }
+
+    @Override
+    public ResultSink register(TaskInfo taskInfo) {
+        return new FrameResultSink(pipe.sink(), pipeWriteLock, reserveTaskId(taskInfo));
+    }
+
+    private synchronized int reserveTaskId(TaskInfo taskInfo){
+        int taskId;
+        if (freeIdsNumber > 0){
+            taskId = freeIds[--freeIdsNumber];
+        }
+        else{
+            if (usedIdsNumber == tasks.length){
+                tasks = Arrays.copyOf(tasks, 2 * tasks.length);
+                freeIds = Arrays.copyOf(freeIds, 2 * freeIds.length);
+            }
+            taskId = usedIdsNumber++;
+        }
+        tasks[taskId] = taskInfo;
+        return taskId;
+    }
+
+    /*
+        Channel will be handled by given handler in the thread, that calls await().
+        Channels, which are accepted or opened by handler, can be registered in key.selector() the same way
+     */
+    public void addHandler(SelectableChannel channel, int ops, SelectionHandler handler) throws IOException {
+        channel.configureBlocking(false);
+        channel.register(selector, ops, handler);
+    }
+
+    @Override
+    public int await(long timeoutMillis) throws IOException {
+        int readyChannels = selector.select(timeoutMillis);
+        Metrics.GLOBAL.recordSelectorWakeup();
+        if (readyChannels == 0){ // timeout or wakeup
+            return 0;
+        }
+
+        finishedTasks = 0;
+        Iterator<SelectionKey> keyIterator = selector.selectedKeys().iterator();
+        while (keyIterator.hasNext()){
+            SelectionKey key = keyIterator.next();
+            keyIterator.remove();
+
+            if (key.attachment() instanceof SelectionHandler){
+                ((SelectionHandler)key.attachment()).onReady(key);
+                continue;
+            }
+
+            FrameDecoder decoder = (FrameDecoder)key.attachment();
+            if (decoder.read((Pipe.SourceChannel)key.channel(), this) < 0){
+                key.cancel(); // channel is closed by writer
+            }
+        }
+        return finishedTasks;
+    }
+
+    @Override
+    public void onFrame(int taskId, int status, ByteBuffer payload) {
+        TaskInfo taskInfo;
+        synchronized (this){
+            if (taskId < 0 || taskId >= usedIdsNumber || tasks[taskId] == null){
+                return; // e.g. frame is corrupted, or it is sent twice
+            }
+            taskInfo = tasks[taskId];
+            tasks[taskId] = null;
+            freeIds[freeIdsNumber++] = taskId;
+        }
+        double result = status == ResultSink.SUCCESS ? payload.getDouble() : 0;
+        taskInfo.finish(status, result);
+        finishedTasks++;
+    }
+
+    /*
+        Frames, that are still in pipe, are read and dropped, and all ids become free.
+        Engine with handlers (see addHandler()) isn't reused, because their channels belong to other owners
+     */
+    @Override
+    public boolean reset() throws IOException {
+        if (selector.keys().size() != 1 || !selector.isOpen()){
+            return false;
+        }
+        synchronized (this){
+            Arrays.fill(tasks, 0, usedIdsNumber, null); // so frames, that are read below, are dropped
+            freeIdsNumber = 0;
+            usedIdsNumber = 0;
+        }
+        while (decoder.read(pipe.source(), this) > 0){
+            // pipe is non-blocking, so loop ends when there are no frames
+        }
+        decoder.reset();
+        selector.selectNow(); // clears pending wakeup
+        selector.selectedKeys().clear();
+        return true;
+    }
+
+    @Override
+    public void wakeup() {
+        selector.wakeup();
+    }
+
+    @Override
+    public void close() throws IOException {
+        pipe.source().close();
+        pipe.sink().close();
+        selector.close();
+    }
+}
@@ -0,0 +1,147 @@
+package ua.drovolskyi.task_system;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+    Every task gets its own Pipe, source of which is registered in Selector.
+    await() is blocked in Selector.select(), so no CPU is used while tasks are computing.
+    See MultiplexedCompletionEngine for engine, where all tasks share one pipe.
+    Decoders (their direct buffers) are reused by next tasks, also after reset()
+ */
+public class PipeCompletionEngine implements CompletionEngine {
+    private final Selector selector;
+    private final List<Pipe> pipes = new ArrayList<>();
+    private final ArrayDeque<FrameDecoder> spareDecoders = new ArrayDeque<>();
+
+    public PipeCompletionEngine() throws IOException {
+        selector = Selector.open();
+    }
+
+    @Override
+    public ResultSink register(TaskInfo taskInfo) throws IOException {
+        Pipe pipe = Pipe.open();
+        pipes.add(pipe);
+
+        Pipe.SourceChannel sourceChannel = pipe.source();
+        sourceChannel.configureBlocking(false);
+
+        SelectionKey key = sourceChannel.register(selector, SelectionKey.OP_READ);
+        FrameDecoder decoder = spareDecoders.poll();
+        key.attach(new TaskChannel(taskInfo, decoder != null ? decoder : new FrameDecoder(FrameCodec.MAX_FRAME_SIZE)));
+
+        return new FrameResultSink(pipe.sink(), new ReentrantLock(), 0); // pipe has only one writer
+    }
+
+    @Override
+    public int await(long timeoutMillis) throws IOException {
+        int readyChannels = selector.select(timeoutMillis);
+        Metrics.GLOBAL.recordSelectorWakeup();
+        if (readyChannels == 0){ // timeout or wakeup
+            return 0;
+        }
+
+        // read messages from all finished tasks
+        int finishedTasks = 0;
+        Set<SelectionKey> selectedKeys = selector.selectedKeys();
+        Iterator<SelectionKey> keyIterator = selectedKeys.iterator();
+
+        while(keyIterator.hasNext()) {
+            SelectionKey key = keyIterator.next();
+            keyIterator.remove();
+
+            if (proceedTaskFinishing(key)){
+                finishedTasks++;
+            }
+        }
+        return finishedTasks;
+    }
+
+    /*
+        This function fills taskInfo after task is finished.
+        Returns false if message of task isn't received completely yet
+     */
+    private boolean proceedTaskFinishing(SelectionKey key) throws IOException {
+        if (!key.isReadable()){
+            throw new IllegalArgumentException("Task's key must be readable");
+        }
+
+        TaskChannel taskChannel = (TaskChannel)(key.attachment());
+        Pipe.SourceChannel channel = (Pipe.SourceChannel)(key.channel());
+        int framesNumber = taskChannel.decoder.read(channel, taskChannel);
+        if (framesNumber == 0){
+            return false;
+        }
+
+        // each task sends only one message, so its channel is not needed anymore
+        releaseChannel(key);
+        return framesNumber > 0;
+    }
+
+    private void releaseChannel(SelectionKey key) throws IOException {
+        FrameDecoder decoder = ((TaskChannel)key.attachment()).decoder;
+        decoder.reset();
+        spareDecoders.add(decoder);
+        key.cancel();
+        key.channel().close();
+    }
+
+    // pipes of previous tasks are closed, unread results are dropped
+    @Override
+    public boolean reset() throws IOException {
+        if (!selector.isOpen()){
+            return false;
+        }
+        for (SelectionKey key : selector.keys()){
+            if (key.isValid()){
+                releaseChannel(key);
+            }
+        }
+        for (Pipe pipe : pipes){
+            pipe.sink().close();
+        }
+        pipes.clear();
+        selector.selectNow(); // deregisters cancelled keys, clears pending wakeup
+        selector.selectedKeys().clear();
+        return true;
+    }
+
+    @Override
+    public void wakeup() {
+        selector.wakeup();
+    }
+
+    private static class TaskChannel implements FrameDecoder.FrameHandler {
+        private final TaskInfo taskInfo;
+        private final FrameDecoder decoder;
+
+        private TaskChannel(TaskInfo taskInfo, FrameDecoder decoder){
+            this.taskInfo = taskInfo;
+            this.decoder = decoder;
+        }
+
+        @Override
+        public void onFrame(int taskId, int status, ByteBuffer payload) {
+            double result = status == ResultSink.SUCCESS ? payload.getDouble() : 0;
+            taskInfo.finish(status, result);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Pipe pipe : pipes){
+            pipe.source().close();
+            pipe.sink().close();
+        }
+        selector.close();
+    }
+}
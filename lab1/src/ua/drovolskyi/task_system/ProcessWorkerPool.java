@@ -0,0 +1,240 @@
+package ua.drovolskyi.task_system;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+    Pool of pre-started worker processes (see WorkerMain), that compute functions outside of manager's JVM,
+    so crash of function can't take down manager. Workers stay alive and are reused by all evaluations,
+    so JVM startup and JIT warm-up are paid once per worker.
+    Workers get functions from provider with given spec (see FunctionProvider.load()).
+
+    Every worker has pump thread, which reads frames from stdout of process and hands results over to sinks,
+    that were given with tasks (see submit()), so pool can be shared by managers with any CompletionEngine.
+    Ids of tasks are given by pool and are never reused by next evaluations, so frame, that comes late
+    (e.g. result of task of finished evaluation), is dropped instead of finishing other task.
+    Cancelled task doesn't report result, so worker confirms cancellation by frame with CANCELLED status,
+    and only then id is forgotten. If worker process dies, pump reports soft fail
+    for all its unfinished tasks and starts new process
+ */
+public class ProcessWorkerPool implements Closeable {
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 1000;
+
+    private final String functionsSpec;
+    private final Worker[] workers;
+    private final Map<Integer, RemoteTask> remoteTasks = new ConcurrentHashMap<>(); // by ids of unfinished tasks
+    private final AtomicInteger nextTaskId = new AtomicInteger(0);
+    private volatile boolean closed = false;
+
+    public ProcessWorkerPool(int workersNumber) throws IOException {
+        this(workersNumber, FunctionProvider.DEFAULT_SPEC);
+    }
+
+    public ProcessWorkerPool(int workersNumber, String functionsSpec) throws IOException {
+        if (workersNumber <= 0){
+            throw new IllegalArgumentException("workersNumber must be > 0");
+        }
+        this.functionsSpec = functionsSpec;
+        workers = new Worker[workersNumber];
+        for (int i = 0; i < workersNumber; i++){
+            workers[i] = new Worker(i);
+        }
+    }
+
+    public int getWorkersNumber(){
+        return workers.length;
+    }
+
+    /*
+        Sends task to the least loaded worker, its result will be given to sink (by pump thread).
+        Returns id of task in pool, by which it can be cancelled
+     */
+    public int submit(ResultSink sink, String functionName, int x, RetryPolicy retryPolicy){
+        if (closed){
+            throw new IllegalStateException("Pool is closed");
+        }
+        Worker worker = workers[0];
+        for (Worker candidate : workers){
+            if (candidate.tasks.size() < worker.tasks.size()){
+                worker = candidate;
+            }
+        }
+        int taskId = nextTaskId.getAndIncrement();
+        remoteTasks.put(taskId, new RemoteTask(worker, sink));
+        worker.submit(taskId, "run " + taskId + " " + functionName + " " + x + " " + retryPolicy.toSpec());
+        return taskId;
+    }
+
+    // result of cancelled task won't be given to its sink, unless it is already being sent
+    public void cancel(int taskId){
+        RemoteTask task = remoteTasks.get(taskId);
+        if (task != null){
+            task.worker.send("cancel " + taskId);
+        }
+    }
+
+    // gives result of frame to sink of its task; frames of unknown tasks are dropped
+    private void deliver(int taskId, int status, double result){
+        RemoteTask task = remoteTasks.remove(taskId);
+        if (task == null){
+            return;
+        }
+        task.worker.tasks.remove(taskId);
+        if (status == FrameCodec.CANCELLED){
+            return; // nobody waits for result of cancelled task
+        }
+        try {
+            if (status == ResultSink.SUCCESS){
+                task.sink.sendResult(result);
+            }
+            else{
+                task.sink.sendFailure(status);
+            }
+        } catch (IOException e){
+            // evaluation is already finished, and its engine is closed
+        }
+    }
+
+    // workers exit when their stdin is closed; processes, that don't exit in time, are killed
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        for (Worker worker : workers){
+            worker.stop();
+        }
+        for (Worker worker : workers){
+            worker.awaitStopped();
+        }
+    }
+
+    private Process startProcess() throws IOException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                WorkerMain.class.getName(), functionsSpec);
+        builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+        return builder.start();
+    }
+
+    private static class RemoteTask {
+        private final Worker worker;
+        private final ResultSink sink;
+
+        private RemoteTask(Worker worker, ResultSink sink){
+            this.worker = worker;
+            this.sink = sink;
+        }
+    }
+
+    private class Worker {
+        private final Thread pumpThread;
+        private final Set<Integer> tasks = ConcurrentHashMap.newKeySet(); // ids of unfinished tasks
+        private Process process;
+        private BufferedWriter processInput;
+
+        private Worker(int index) throws IOException {
+            startNewProcess();
+
+            pumpThread = new Thread(this::pump, "worker-pump-" + index);
+            pumpThread.setDaemon(true);
+            pumpThread.start();
+        }
+
+        private synchronized void startNewProcess() throws IOException {
+            process = startProcess();
+            processInput = new BufferedWriter(new OutputStreamWriter(process.getOutputStream()));
+        }
+
+        private synchronized void submit(int taskId, String command){
+            tasks.add(taskId);
+            send(command);
+        }
+
+        private synchronized void send(String command){
+            try {
+                processInput.write(command);
+                processInput.newLine();
+                processInput.flush();
+            } catch (IOException e){
+                // process is dead, pump will report fail of its tasks and restart it
+            }
+        }
+
+        // hands over results from stdout of process to sinks of tasks, restarts process if it dies
+        private void pump(){
+            ByteBuffer frame = ByteBuffer.allocate(FrameCodec.MAX_FRAME_SIZE);
+            try {
+                while (true){
+                    DataInputStream processOutput;
+                    synchronized (this){
+                        processOutput = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+                    }
+                    try {
+                        while (true){
+                            int length = processOutput.readInt();
+                            if (length < FrameCodec.HEADER_SIZE || length > frame.capacity() - FrameCodec.LENGTH_FIELD_SIZE){
+                                throw new IOException("Corrupted frame from worker, length = " + length);
+                            }
+                            processOutput.readFully(frame.array(), 0, length);
+                            int taskId = frame.getInt(0);
+                            int status = frame.getInt(Integer.BYTES); // after taskId
+                            double result = status == ResultSink.SUCCESS ? frame.getDouble(FrameCodec.HEADER_SIZE) : 0;
+                            deliver(taskId, status, result);
+                        }
+                    } catch (EOFException e){
+                        // process is finished
+                    } catch (IOException e){
+                        System.err.println("Worker: " + e.getMessage());
+                    }
+
+                    if (closed){
+                        break;
+                    }
+
+                    // process died, so its tasks won't be finished
+                    synchronized (this){
+                        process.destroyForcibly();
+                        for (Integer taskId : tasks){
+                            deliver(taskId, ResultSink.SOFT_FAIL, 0);
+                        }
+                        startNewProcess();
+                    }
+                }
+            } catch (IOException e){
+                if (!closed){
+                    throw new RuntimeException(e);
+                }
+            }
+        }
+
+        private synchronized void stop() throws IOException {
+            processInput.close();
+        }
+
+        private void awaitStopped() throws IOException {
+            Process currentProcess;
+            synchronized (this){
+                currentProcess = process;
+            }
+            try {
+                if (!currentProcess.waitFor(SHUTDOWN_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)){
+                    currentProcess.destroyForcibly();
+                }
+                pumpThread.join(SHUTDOWN_TIMEOUT_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -1,8 +1,598 @@
 package ua.drovolskyi.task_system;
 
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.Function;
+
 public class Program {
+    private static final String USAGE =
+            "Usage: 'java [executable file] [--virtual | --processes <N>] [--deadline <MS>] " +
+            "[--attempt-timeout <MS>] [--metrics <PERIOD MS> [--metrics-json]] [--control-port <PORT>] " +
+            "[--progress <PERIOD MS>] [--combiner <NAME>] [--functions <SPEC>] [--journal <FILE>] " +
+            "[--channel <NAME>]' - interactive mode\n" +
+            "       'java [executable file] --batch [<INPUT FILE>] [--unordered] " +
+            "[--workers <N> | --virtual] [--adaptive] [--in-flight <N>] [--cache <SIZE>] " +
+            "[--backoff <MS>] [--attempt-timeout <MS>] [--hedge <PERCENTILE>] " +
+            "[--metrics <PERIOD MS> [--metrics-json]] [--control-port <PORT>] [--combiner <NAME>] " +
+            "[--functions <SPEC>] [--journal <FILE>]' - batch mode, x values are read from file or stdin\n" +
+            "       'java [executable file] --server [--port <PORT>] [--workers <N> | --virtual] [--adaptive] " +
+            "[--in-flight <N>] " +
+            "[--metrics <PERIOD MS> [--metrics-json]] [--control-port <PORT>] [--functions <SPEC>]' - " +
+            "server mode, requests are read from loopback TCP connections (see EvaluationServer)\n" +
+            "       'java [executable file] --load --rate <PER SEC> --duration <MS> [--x-range <N>] " +
+            "[--deadline <MS>] [--workers <N> | --virtual] [--adaptive] [--in-flight <N>] [--combiner <NAME>] " +
+            "[--functions <SPEC>] [--metrics <PERIOD MS> [--metrics-json]]' - " +
+            "load generation mode (see LoadGenerator)\n" +
+            "SPEC of functions is 'trial' (default) or 'synthetic:<PROFILES FILE>' (see FunctionProvider)\n" +
+            "With --adaptive number of tasks in flight is adjusted by their latency (see AdaptiveExecutor), " +
+            "then --workers is only its upper bound (8 * number of cores by default)\n" +
+            "With --journal computed results are saved to file, and run with the same file " +
+            "doesn't compute them again (see ResultJournal)\n" +
+            "NAME of channel, through which tasks send results to manager, is 'multiplexed' (default), 'pipe', " +
+            "'queue' (default with --virtual) or 'ring[:spin|yield|park]' (see RingBufferCompletionEngine)";
+
     public static void main(String[] args) {
-        Manager manager = new Manager();
-        manager.run();
+        Options options = null;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e){
+            printUsage(e);
+            System.exit(-1);
+        }
+
+        switch (options.mode){
+            case BATCH:
+                runBatch(options);
+                break;
+            case SERVER:
+                runServer(options);
+                break;
+            case LOAD:
+                runLoad(options);
+                break;
+            default:
+                runInteractive(options);
+                break;
+        }
+    }
+
+    private static void runInteractive(Options options){
+        ResultJournal journal = openJournal(options.journalPath);
+        boolean virtualThreads = options.virtual && checkVirtualThreadsSupported();
+        Function<Integer, Optional<Optional<Double>>> f = options.functionProvider.getFunction("f");
+        Function<Integer, Optional<Optional<Double>>> g = options.functionProvider.getFunction("g");
+        EvaluationGraph graph = createGraph(journal != null ? journal.wrap("f", f) : f,
+                journal != null ? journal.wrap("g", g) : g, options.combiner, 0, options.attemptTimeoutMillis, 0,
+                virtualThreads);
+        startMetrics(options.metricsPeriodMillis, options.metricsJson);
+        ControlServer controlServer = createControlServer(options.controlPort, Map.of());
+        if (options.progressPeriodMillis > 0){
+            EvaluationRegistry.GLOBAL.startProgressReporter(options.progressPeriodMillis, System.err);
+        }
+
+        if (options.processesNumber > 0){
+            // worker processes are started before x is entered, so they are warm when computations start
+            try (ProcessWorkerPool workerPool = new ProcessWorkerPool(options.processesNumber,
+                    options.functionsSpec)){
+                Manager manager = new Manager(graph, workerPool);
+                manager.setControlServer(controlServer);
+                manager.run(options.deadlineMillis);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            return;
+        }
+
+        Manager manager;
+        if (virtualThreads){
+            // by default results are handed over through queue, not through pipes, so virtual threads aren't pinned
+            manager = new Manager(graph, TaskExecutors.virtualThreadPerTask(),
+                    options.engineFactory != null ? options.engineFactory : FutureCompletionEngine::new);
+        }
+        else if (options.engineFactory != null){
+            manager = new Manager(graph, TaskExecutors.shared(), options.engineFactory);
+        }
+        else{
+            manager = new Manager(graph);
+        }
+        manager.setControlServer(controlServer);
+        manager.run(options.deadlineMillis);
+        closeJournal(journal);
+    }
+
+    private static void runBatch(Options options){
+        Function<Integer, Optional<Optional<Double>>> f = options.functionProvider.getFunction("f");
+        Function<Integer, Optional<Optional<Double>>> g = options.functionProvider.getFunction("g");
+        ResultJournal journal = openJournal(options.journalPath);
+        if (journal != null){ // journal is under cache, so cache remembers journaled results too
+            f = journal.wrap("f", f);
+            g = journal.wrap("g", g);
+        }
+        CachedFunction cachedF = null;
+        CachedFunction cachedG = null;
+        if (options.cacheSize > 0){
+            cachedF = new CachedFunction(f, options.cacheSize);
+            cachedG = new CachedFunction(g, options.cacheSize);
+        }
+
+        boolean virtualThreads = options.virtual && checkVirtualThreadsSupported();
+        EvaluationGraph graph = createGraph(cachedF != null ? cachedF : f,
+                cachedG != null ? cachedG : g, options.combiner,
+                options.backoffMillis, options.attemptTimeoutMillis, options.hedgePercentile, virtualThreads);
+
+        // with virtual threads number of tasks is limited only by number of evaluations in flight
+        ExecutorService pool = virtualThreads ?
+                TaskExecutors.virtualThreadPerTask() :
+                TaskExecutors.fixedPool(getWorkersNumber(options.workersNumber, options.adaptive));
+        // evaluator doesn't read next x while maxEvaluationsInFlight are computed, so excess tasks can wait
+        AdaptiveExecutor adaptiveExecutor = options.adaptive ? createAdaptiveExecutor(pool,
+                options.maxEvaluationsInFlight * graph.getComponents().size(), false,
+                options.metricsPeriodMillis > 0) : null;
+        ExecutorService workers = options.adaptive ? adaptiveExecutor : pool;
+        BatchEvaluator evaluator = new BatchEvaluator(graph, workers, options.maxEvaluationsInFlight,
+                options.ordered);
+        startMetrics(options.metricsPeriodMillis, options.metricsJson);
+
+        Map<String, ControlServer.Limit> limits = new HashMap<>();
+        if (adaptiveExecutor != null){
+            limits.put("adaptive", createAdaptiveLimit(adaptiveExecutor));
+        }
+        limits.put("in-flight", new ControlServer.Limit() {
+            @Override
+            public int get() {
+                return evaluator.getMaxEvaluationsInFlight();
+            }
+
+            @Override
+            public void set(int value) {
+                evaluator.setMaxEvaluationsInFlight(value);
+            }
+        });
+        if (pool instanceof ThreadPoolExecutor){ // virtual threads have no limit
+            ThreadPoolExecutor threadPool = (ThreadPoolExecutor)pool;
+            limits.put("workers", new ControlServer.Limit() {
+                @Override
+                public int get() {
+                    return threadPool.getMaximumPoolSize();
+                }
+
+                @Override
+                public void set(int value) {
+                    // core size must never be greater than max size
+                    if (value > threadPool.getMaximumPoolSize()){
+                        threadPool.setMaximumPoolSize(value);
+                        threadPool.setCorePoolSize(value);
+                    }
+                    else{
+                        threadPool.setCorePoolSize(value);
+                        threadPool.setMaximumPoolSize(value);
+                    }
+                }
+            });
+        }
+        ControlServer controlServer = createControlServer(options.controlPort, limits);
+        if (controlServer != null){
+            try {
+                controlServer.start();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        try (BufferedReader in = new BufferedReader(options.inputFilePath == null ?
+                new InputStreamReader(System.in) : new FileReader(options.inputFilePath))){
+            long startTime = System.nanoTime();
+            long evaluated = evaluator.run(in, System.out);
+            double seconds = (System.nanoTime() - startTime) / 1e9;
+            System.err.printf("Evaluated %d values in %.3f s (%.1f results/sec)%n",
+                    evaluated, seconds, evaluated / seconds);
+            if (options.cacheSize > 0){
+                System.err.println("f(x) " + cachedF);
+                System.err.println("g(x) " + cachedG);
+            }
+            if (adaptiveExecutor != null){
+                System.err.println("Adaptive " + adaptiveExecutor);
+            }
+            closeJournal(journal);
+            if (options.metricsPeriodMillis > 0){ // final snapshot
+                System.err.println(options.metricsJson ? Metrics.GLOBAL.toJson() : Metrics.GLOBAL.toText());
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            workers.shutdown();
+        }
+    }
+
+    private static void runServer(Options options){
+        ExecutorService pool = options.virtual && checkVirtualThreadsSupported() ?
+                TaskExecutors.virtualThreadPerTask() :
+                TaskExecutors.fixedPool(getWorkersNumber(options.workersNumber, options.adaptive));
+        // requests have 2 functions (f and g) by default
+        AdaptiveExecutor adaptiveExecutor = options.adaptive ? createAdaptiveExecutor(pool,
+                2 * options.maxEvaluationsInFlight, true, options.metricsPeriodMillis > 0) : null;
+        ExecutorService workers = options.adaptive ? adaptiveExecutor : pool;
+        startMetrics(options.metricsPeriodMillis, options.metricsJson);
+        try (EvaluationServer server = new EvaluationServer(options.port, workers, options.maxEvaluationsInFlight,
+                options.functionProvider)){
+            ControlServer controlServer = createControlServer(options.controlPort, options.adaptive ?
+                    Map.of("adaptive", createAdaptiveLimit(adaptiveExecutor)) : Map.of());
+            if (controlServer != null){
+                controlServer.start();
+            }
+            System.err.println("Evaluation server is listening on 127.0.0.1:" + server.getPort());
+            server.run();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    private static void runLoad(Options options){
+        EvaluationGraph graph = createGraph(options.functionProvider.getFunction("f"),
+                options.functionProvider.getFunction("g"),
+                options.combiner, 0, 0, 0, false); // attempts don't need separate threads
+        ExecutorService pool = options.virtual && checkVirtualThreadsSupported() ?
+                TaskExecutors.virtualThreadPerTask() :
+                TaskExecutors.fixedPool(getWorkersNumber(options.workersNumber, options.adaptive));
+        AdaptiveExecutor adaptiveExecutor = options.adaptive ? createAdaptiveExecutor(pool,
+                options.maxEvaluationsInFlight * graph.getComponents().size(), true,
+                options.metricsPeriodMillis > 0) : null;
+        ExecutorService workers = options.adaptive ? adaptiveExecutor : pool;
+        startMetrics(options.metricsPeriodMillis, options.metricsJson);
+        try {
+            LoadGenerator generator = new LoadGenerator(graph, workers, options.ratePerSecond,
+                    options.deadlineMillis, options.maxEvaluationsInFlight);
+            System.out.println(generator.run(options.durationMillis, options.xRange));
+            if (adaptiveExecutor != null){
+                System.out.println("Adaptive " + adaptiveExecutor);
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    /*
+        Returns null if path is null (journal isn't needed). Journal is closed by shutdown hook too,
+        so results, that are computed before System.exit() or Ctrl+C, are saved
+     */
+    private static ResultJournal openJournal(String path){
+        if (path == null){
+            return null;
+        }
+        try {
+            ResultJournal journal = new ResultJournal(Path.of(path), ResultJournal.DEFAULT_SYNC_INTERVAL_MILLIS);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> closeJournal(journal)));
+            return journal;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void closeJournal(ResultJournal journal){
+        if (journal == null || journal.isClosed()){
+            return;
+        }
+        try {
+            journal.close();
+        } catch (IOException e) {
+            // failure is shown by toString() of journal below, results, that are computed, are valid anyway
+        }
+        System.err.println("Results " + journal);
+    }
+
+    // number of cores by default; with adaptive limit threads are only upper bound of concurrency, so there are more
+    private static int getWorkersNumber(int workersNumber, boolean adaptive){
+        if (workersNumber > 0){
+            return workersNumber;
+        }
+        return (adaptive ? 8 : 1) * Runtime.getRuntime().availableProcessors();
+    }
+
+    /*
+        Adaptive limit in front of pool (see AdaptiveExecutor). Limit can't be greater than number of threads
+        of pool; for virtual threads it is bounded by maxTasksInFlight
+     */
+    private static AdaptiveExecutor createAdaptiveExecutor(ExecutorService pool, int maxTasksInFlight,
+                                                           boolean shedding, boolean jmx){
+        int maxLimit = pool instanceof ThreadPoolExecutor ?
+                ((ThreadPoolExecutor)pool).getMaximumPoolSize() : maxTasksInFlight;
+        AdaptiveExecutor executor = TaskExecutors.adaptive(pool, maxLimit, shedding);
+        if (jmx){
+            executor.registerMBean();
+        }
+        return executor;
+    }
+
+    // current adaptive limit is shown by control endpoint, but it can't be changed by hand
+    private static ControlServer.Limit createAdaptiveLimit(AdaptiveExecutor executor){
+        return new ControlServer.Limit() {
+            @Override
+            public int get() {
+                return executor.getLimit();
+            }
+
+            @Override
+            public void set(int value) {
+                throw new IllegalArgumentException("limit is adjusted automatically (" + executor + ")");
+            }
+        };
+    }
+
+    // reason is printed, if it is known (e.g. malformed spec of functions)
+    private static void printUsage(RuntimeException reason){
+        if (reason.getMessage() != null){
+            System.out.println(reason.getMessage());
+        }
+        System.out.println(USAGE);
+    }
+
+    // metrics are exposed through JMX and printed to stderr periodically (they are recorded anyway)
+    private static void startMetrics(long periodMillis, boolean json){
+        if (periodMillis > 0){
+            Metrics.GLOBAL.registerMBeans();
+            Metrics.GLOBAL.startReporter(periodMillis, System.err, json);
+        }
+    }
+
+    // returns null if port is -1 (control endpoint isn't needed)
+    private static ControlServer createControlServer(int port, Map<String, ControlServer.Limit> limits){
+        if (port == -1){
+            return null;
+        }
+        try {
+            ControlServer server = new ControlServer(port, EvaluationRegistry.GLOBAL, limits);
+            System.err.println("Control endpoint is listening on 127.0.0.1:" + server.getPort());
+            return server;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static boolean checkVirtualThreadsSupported(){
+        if (!TaskExecutors.isVirtualThreadsSupported()){
+            System.err.println("Virtual threads require Java 21 or newer, platform threads are used instead");
+            return false;
+        }
+        return true;
+    }
+
+    // f(x) and g(x) combined by combiner (f(x) + g(x) by default), with given implementations of functions
+    // and retry settings; attempts run on virtual threads if tasks do
+    private static EvaluationGraph createGraph(Function<Integer, Optional<Optional<Double>>> f,
+                                               Function<Integer, Optional<Optional<Double>>> g,
+                                               Combiner combiner, long backoffMillis, long attemptTimeoutMillis,
+                                               double hedgePercentile, boolean virtualThreads){
+        ExecutorService attemptExecutor = virtualThreads ?
+                TaskExecutors.virtualThreadPerTask() : TaskExecutors.attemptThreads();
+        EvaluationGraph graph = new EvaluationGraph();
+        EvaluationGraph.Node fNode = graph.component("f", f,
+                createRetryPolicy(backoffMillis, attemptTimeoutMillis, hedgePercentile, attemptExecutor));
+        EvaluationGraph.Node gNode = graph.component("g", g,
+                createRetryPolicy(backoffMillis, attemptTimeoutMillis, hedgePercentile, attemptExecutor));
+        graph.setRoot(graph.combine(combiner, fNode, gNode));
+        return graph;
+    }
+
+    // every function gets its own policy, because policy remembers latencies of attempts
+    private static RetryPolicy createRetryPolicy(long backoffMillis, long attemptTimeoutMillis,
+                                                 double hedgePercentile, ExecutorService attemptExecutor){
+        RetryPolicy policy = backoffMillis > 0 ?
+                RetryPolicy.exponentialBackoff(EvaluationGraph.DEFAULT_MAX_COMPUTATION_ATTEMPTS,
+                        backoffMillis, 32 * backoffMillis) :
+                RetryPolicy.immediate(EvaluationGraph.DEFAULT_MAX_COMPUTATION_ATTEMPTS);
+        return policy.withAttemptTimeout(attemptTimeoutMillis).withHedging(hedgePercentile)
+                .withAttemptExecutor(attemptExecutor);
+    }
+
+    // options, that can be given in every mode, are listed only here
+    private enum Mode {
+        INTERACTIVE("--virtual", "--processes", "--deadline", "--attempt-timeout", "--control-port", "--progress",
+                "--combiner", "--journal", "--channel"),
+        BATCH("--unordered", "--workers", "--virtual", "--adaptive", "--in-flight", "--cache", "--backoff",
+                "--attempt-timeout", "--hedge", "--control-port", "--combiner", "--journal"),
+        SERVER("--port", "--workers", "--virtual", "--adaptive", "--in-flight", "--control-port"),
+        LOAD("--rate", "--duration", "--x-range", "--deadline", "--workers", "--virtual", "--adaptive",
+                "--in-flight", "--combiner");
+
+        private static final Set<String> COMMON_OPTIONS = Set.of("--functions", "--metrics", "--metrics-json");
+
+        private final Set<String> options;
+
+        Mode(String... options){
+            this.options = Set.of(options);
+        }
+
+        private boolean accepts(String option){
+            return options.contains(option) || COMMON_OPTIONS.contains(option);
+        }
+    }
+
+    /*
+        Command line of any mode. Every option is parsed here the same way in all modes, mode only decides,
+        which options it accepts, and all combinations of options are checked in one place (see validate()).
+        Throws IllegalArgumentException (or ArrayIndexOutOfBoundsException, if value of option is missing)
+     */
+    private static class Options {
+        private Mode mode = Mode.INTERACTIVE;
+        private boolean virtual = false;
+        private int processesNumber = 0; // 0 means that functions are computed in this process
+        private int workersNumber = 0; // 0 means default number
+        private boolean adaptive = false;
+        private int maxEvaluationsInFlight;
+        private long deadlineMillis = 0; // 0 means that there is no deadline
+        private long attemptTimeoutMillis = 0;
+        private long backoffMillis = 0;
+        private double hedgePercentile = 0;
+        private int cacheSize = 0; // 0 means that results are not cached
+        private long metricsPeriodMillis = 0; // 0 means that metrics aren't reported
+        private boolean metricsJson = false;
+        private int controlPort = -1; // -1 means that there is no control endpoint
+        private long progressPeriodMillis = 0; // 0 means that progress isn't printed
+        private Combiner combiner = Combiner.SUM;
+        private String functionsSpec = FunctionProvider.DEFAULT_SPEC; // worker processes load functions by it
+        private FunctionProvider functionProvider;
+        private String journalPath = null;
+        private CompletionEngine.Factory engineFactory = null; // null means default one
+        private String inputFilePath = null; // null means stdin
+        private boolean ordered = true;
+        private int port = 7070;
+        private double ratePerSecond = 0;
+        private long durationMillis = 0;
+        private int xRange = 100;
+
+        private static Options parse(String[] args){
+            Options options = new Options();
+            int first = 0;
+            if (args.length > 0){
+                switch (args[0]){
+                    case "--batch":
+                        options.mode = Mode.BATCH;
+                        break;
+                    case "--server":
+                        options.mode = Mode.SERVER;
+                        break;
+                    case "--load":
+                        options.mode = Mode.LOAD;
+                        break;
+                }
+                first = options.mode == Mode.INTERACTIVE ? 0 : 1;
+            }
+            // evaluator of batch mode reads next x only when some evaluation is finished, so it needs less
+            options.maxEvaluationsInFlight = options.mode == Mode.BATCH ?
+                    4 * Runtime.getRuntime().availableProcessors() : 4096;
+
+            for (int i = first; i < args.length; i++){
+                if (options.mode == Mode.BATCH && !args[i].startsWith("--") && options.inputFilePath == null){
+                    options.inputFilePath = args[i];
+                    continue;
+                }
+                if (!options.mode.accepts(args[i])){ // mistyped option or extra argument
+                    throw new IllegalArgumentException("Unknown argument: " + args[i]);
+                }
+                switch (args[i]){
+                    case "--virtual":
+                        options.virtual = true;
+                        break;
+                    case "--processes":
+                        options.processesNumber = Integer.parseInt(args[++i]);
+                        break;
+                    case "--workers":
+                        options.workersNumber = Integer.parseInt(args[++i]);
+                        break;
+                    case "--adaptive":
+                        options.adaptive = true;
+                        break;
+                    case "--in-flight":
+                        options.maxEvaluationsInFlight = Integer.parseInt(args[++i]);
+                        break;
+                    case "--deadline":
+                        options.deadlineMillis = Long.parseLong(args[++i]);
+                        break;
+                    case "--attempt-timeout":
+                        options.attemptTimeoutMillis = Long.parseLong(args[++i]);
+                        break;
+                    case "--backoff":
+                        options.backoffMillis = Long.parseLong(args[++i]);
+                        break;
+                    case "--hedge":
+                        options.hedgePercentile = Double.parseDouble(args[++i]);
+                        break;
+                    case "--cache":
+                        options.cacheSize = Integer.parseInt(args[++i]);
+                        break;
+                    case "--metrics":
+                        options.metricsPeriodMillis = Long.parseLong(args[++i]);
+                        break;
+                    case "--metrics-json":
+                        options.metricsJson = true;
+                        break;
+                    case "--control-port":
+                        options.controlPort = Integer.parseInt(args[++i]);
+                        break;
+                    case "--progress":
+                        options.progressPeriodMillis = Long.parseLong(args[++i]);
+                        break;
+                    case "--combiner":
+                        options.combiner = Combiner.byName(args[++i]);
+                        break;
+                    case "--functions":
+                        options.functionsSpec = args[++i];
+                        break;
+                    case "--journal":
+                        options.journalPath = args[++i];
+                        break;
+                    case "--channel":
+                        options.engineFactory = CompletionEngine.Factory.byName(args[++i]);
+                        break;
+                    case "--unordered":
+                        options.ordered = false;
+                        break;
+                    case "--port":
+                        options.port = Integer.parseInt(args[++i]);
+                        break;
+                    case "--rate":
+                        options.ratePerSecond = Double.parseDouble(args[++i]);
+                        break;
+                    case "--duration":
+                        options.durationMillis = Long.parseLong(args[++i]);
+                        break;
+                    case "--x-range":
+                        options.xRange = Integer.parseInt(args[++i]);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown argument: " + args[i]);
+                }
+            }
+            options.functionProvider = FunctionProvider.load(options.functionsSpec);
+            options.validate();
+            return options;
+        }
+
+        private void validate(){
+            if (processesNumber < 0 || workersNumber < 0 || cacheSize < 0){
+                throw new IllegalArgumentException("Numbers of processes, workers and cache size must be >= 0");
+            }
+            if (maxEvaluationsInFlight <= 0){
+                throw new IllegalArgumentException("Number of evaluations in flight must be > 0");
+            }
+            if (deadlineMillis < 0 || attemptTimeoutMillis < 0 || backoffMillis < 0 ||
+                    metricsPeriodMillis < 0 || progressPeriodMillis < 0){
+                throw new IllegalArgumentException("Deadline, timeouts and periods must be >= 0");
+            }
+            if (hedgePercentile < 0 || hedgePercentile >= 100){
+                throw new IllegalArgumentException("Hedge percentile must be in [0, 100)");
+            }
+            if (metricsJson && metricsPeriodMillis == 0){
+                throw new IllegalArgumentException("--metrics-json can be used only with --metrics");
+            }
+            if (virtual && workersNumber > 0){
+                throw new IllegalArgumentException("Virtual threads have no fixed number of workers");
+            }
+            if (processesNumber > 0){
+                if (virtual){
+                    throw new IllegalArgumentException("Worker processes don't run tasks on virtual threads");
+                }
+                if (journalPath != null){
+                    throw new IllegalArgumentException("Journal can't be used with worker processes");
+                }
+                if (engineFactory != null){
+                    throw new IllegalArgumentException("Worker processes always send results through one pipe");
+                }
+            }
+            if (mode == Mode.LOAD && (ratePerSecond <= 0 || durationMillis <= 0 || xRange <= 0)){
+                throw new IllegalArgumentException("rate, duration and x range must be > 0");
+            }
+        }
     }
 }
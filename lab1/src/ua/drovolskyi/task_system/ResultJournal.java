@@ -0,0 +1,268 @@
+package ua.drovolskyi.task_system;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/*
+    Append-only journal of computed results of functions, so that interrupted run (by [q], System.exit()
+    or crash) can be resumed without computing them again. One record per line:
+    "<function name>\t<x>\tok\t<value>" or "<function name>\t<x>\thard-fail".
+    Soft fails aren't recorded, because next attempt can succeed.
+
+    Functions are wrapped by wrap(): results, that are in journal, are returned at once, other ones are computed
+    and recorded. Records are written by separate thread in batches, one fsync per batch, so tasks don't wait
+    for disk; at most last syncIntervalMillis of results can be lost by crash of machine.
+    When journal is opened, it is replayed; incomplete last record (process died while writing it) is cut off,
+    and malformed records are skipped. If journal can't be written, next results aren't recorded anymore;
+    such results, skipped records and the failure itself are shown by toString()
+ */
+public class ResultJournal implements Closeable {
+    private static final String SUCCESS = "ok";
+    private static final String HARD_FAIL = "hard-fail";
+    private static final String STOP = ""; // tells writer thread, that journal is closed
+    public static final long DEFAULT_SYNC_INTERVAL_MILLIS = 100;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final long syncIntervalMillis;
+    private final Map<String, Map<Integer, Optional<Double>>> results = new ConcurrentHashMap<>();
+    private final LinkedBlockingQueue<String> pendingRecords = new LinkedBlockingQueue<>();
+    private final Thread writerThread;
+    private final LongAdder replayed = new LongAdder(); // results, that are taken from journal
+    private final LongAdder recorded = new LongAdder();
+    private final LongAdder saved = new LongAdder(); // recorded results, that are written and synced
+    private final LongAdder dropped = new LongAdder(); // results, that aren't recorded after close or failure
+    private final LongAdder syncs = new LongAdder();
+    private int malformedRecords = 0; // found by replay
+    private int truncatedBytes = 0; // size of incomplete last record, that is cut off by replay
+    private volatile boolean closed = false;
+    private volatile IOException writeFailure;
+
+    /*
+        Opens journal (file is created if it doesn't exist) and replays it.
+        syncIntervalMillis is minimal time between fsyncs (0 - fsync as soon as batch is written)
+     */
+    public ResultJournal(Path path, long syncIntervalMillis) throws IOException {
+        if (syncIntervalMillis < 0){
+            throw new IllegalArgumentException("syncIntervalMillis must be >= 0");
+        }
+        this.path = path;
+        this.syncIntervalMillis = syncIntervalMillis;
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        replay();
+
+        writerThread = new Thread(this::writeRecords, "journal-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    private void replay() throws IOException {
+        byte[] content = Files.readAllBytes(path);
+        int lineStart = 0;
+        int lineNumber = 0;
+        for (int i = 0; i < content.length; i++){
+            if (content[i] != '\n'){
+                continue;
+            }
+            lineNumber++;
+            String line = new String(content, lineStart, i - lineStart, StandardCharsets.UTF_8);
+            if (!replayRecord(line)){
+                malformedRecords++;
+                System.err.println("Journal " + path + ": malformed record at line " + lineNumber + " is skipped");
+            }
+            lineStart = i + 1;
+        }
+        // record without line end is written only partially, even if it can be parsed (e.g. value is cut)
+        truncatedBytes = content.length - lineStart;
+        if (truncatedBytes > 0){
+            System.err.println("Journal " + path + ": incomplete last record (" + truncatedBytes +
+                    " bytes) is cut off");
+        }
+        // appends must start after last complete record
+        channel.truncate(lineStart);
+        channel.position(lineStart);
+    }
+
+    private boolean replayRecord(String line){
+        String[] fields = line.split("\t");
+        try {
+            if (fields.length == 4 && fields[2].equals(SUCCESS)){
+                put(fields[0], Integer.parseInt(fields[1]), Optional.of(Double.parseDouble(fields[3])));
+                return true;
+            }
+            if (fields.length == 3 && fields[2].equals(HARD_FAIL)){
+                put(fields[0], Integer.parseInt(fields[1]), Optional.empty());
+                return true;
+            }
+        } catch (NumberFormatException e){
+            // record is malformed
+        }
+        return false;
+    }
+
+    private void put(String functionName, int x, Optional<Double> result){
+        results.computeIfAbsent(functionName, name -> new ConcurrentHashMap<>()).put(x, result);
+    }
+
+    /*
+        Recorded result of function: value, Optional.empty() for hard fail,
+        or null if there is no record (function must be computed)
+     */
+    public Optional<Double> lookup(String functionName, int x){
+        Map<Integer, Optional<Double>> functionResults = results.get(functionName);
+        return functionResults == null ? null : functionResults.get(x);
+    }
+
+    // result is value or Optional.empty() for hard fail; it is written to disk later, in batch
+    public void record(String functionName, int x, Optional<Double> result){
+        if (closed || writeFailure != null){
+            dropped.increment(); // e.g. task finishes during shutdown, its result is lost as without journal
+            return;
+        }
+        put(functionName, x, result);
+        pendingRecords.add(functionName + "\t" + x + "\t" +
+                (result.isPresent() ? SUCCESS + "\t" + result.get() : HARD_FAIL) + "\n");
+        recorded.increment();
+    }
+
+    // function, that takes results from journal if they are there, and records results of computations
+    public Function<Integer, Optional<Optional<Double>>> wrap(String functionName,
+                                                              Function<Integer, Optional<Optional<Double>>> function){
+        return x -> {
+            Optional<Double> journaled = lookup(functionName, x);
+            if (journaled != null){
+                replayed.increment();
+                return Optional.of(journaled);
+            }
+            Optional<Optional<Double>> result = function.apply(x);
+            if (result.isPresent()){ // soft fails aren't recorded
+                record(functionName, x, result.get());
+            }
+            return result;
+        };
+    }
+
+    // writes all pending records as one batch and syncs them, until journal is closed
+    private void writeRecords(){
+        List<String> batch = new ArrayList<>();
+        try {
+            boolean stopped = false;
+            while (!stopped){
+                batch.add(pendingRecords.take());
+                pendingRecords.drainTo(batch);
+                stopped = batch.remove(STOP);
+
+                if (batch.isEmpty()){ // journal is closed, and there is nothing to write
+                    break;
+                }
+                StringBuilder builder = new StringBuilder();
+                for (String record : batch){
+                    builder.append(record);
+                }
+                int batchSize = batch.size();
+                batch.clear();
+                ByteBuffer buffer = ByteBuffer.wrap(builder.toString().getBytes(StandardCharsets.UTF_8));
+                while (buffer.hasRemaining()){
+                    channel.write(buffer);
+                }
+                channel.force(false);
+                syncs.increment();
+                saved.add(batchSize);
+
+                if (syncIntervalMillis > 0 && !stopped){
+                    Thread.sleep(syncIntervalMillis); // records, that come meanwhile, are synced together
+                }
+            }
+        } catch (IOException e){
+            writeFailure = e;
+            System.err.println("Journal " + path + " can't be written, next results won't be saved: " + e);
+        } catch (InterruptedException e) {
+            // journal is closed without waiting for writer
+        }
+    }
+
+    public boolean isClosed(){
+        return closed;
+    }
+
+    public long getReplayedNumber(){
+        return replayed.sum();
+    }
+
+    public long getRecordedNumber(){
+        return recorded.sum();
+    }
+
+    // recorded results, that are on disk; the rest are pending, or lost if journal can't be written
+    public long getSavedNumber(){
+        return saved.sum();
+    }
+
+    public long getDroppedNumber(){
+        return dropped.sum();
+    }
+
+    public int getMalformedRecordsNumber(){
+        return malformedRecords;
+    }
+
+    // null if journal is written without errors
+    public IOException getWriteFailure(){
+        return writeFailure;
+    }
+
+    // writes and syncs records, that are still pending; can be called from shutdown hook
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed){
+            return;
+        }
+        closed = true;
+        pendingRecords.add(STOP);
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        if (writeFailure != null){
+            throw writeFailure;
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("journal " + path + ": " + getReplayedNumber() +
+                " results replayed, " + getRecordedNumber() + " recorded, " + getSavedNumber() + " saved (" +
+                syncs.sum() + " syncs)");
+        if (malformedRecords > 0){
+            builder.append(", ").append(malformedRecords).append(" malformed records skipped");
+        }
+        if (truncatedBytes > 0){
+            builder.append(", incomplete last record (").append(truncatedBytes).append(" bytes) cut off");
+        }
+        if (getDroppedNumber() > 0){
+            builder.append(", ").append(getDroppedNumber()).append(" results dropped");
+        }
+        IOException failure = writeFailure;
+        if (failure != null){
+            builder.append(", write failed: ").append(failure);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,17 @@
+package ua.drovolskyi.task_system;
+
+import java.io.IOException;
+
+/*
+    Worker side of result transport: TaskThread reports outcome of its task through it.
+    Returning codes are the same that Manager used to read from the pipe.
+ */
+public interface ResultSink {
+    int SUCCESS = 0;
+    int SOFT_FAIL = 1;
+    int HARD_FAIL = 2;
+
+    void sendResult(double result) throws IOException;
+
+    void sendFailure(int failureId) throws IOException;
+}
@@ -0,0 +1,199 @@
+package ua.drovolskyi.task_system;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+    Describes how TaskThread retries soft-failing function:
+     - maxAttempts: max number of attempts (hedged attempts are counted too)
+     - backoff before next attempt: initialBackoffMillis * multiplier^(attempt-1), bounded by maxBackoffMillis,
+       with random jitter (part of delay, that is randomized)
+     - attemptTimeoutMillis: attempt, that runs longer, is interrupted and considered as soft fail (0 - no timeout)
+     - hedgePercentile: if attempt runs longer than given percentile of latencies of previous attempts,
+       speculative (hedged) attempt is started, and first finished attempt wins (0 - no hedging)
+
+    Policy remembers latencies of recent attempts, so one policy should be used for one function
+ */
+public class RetryPolicy {
+    private static final int LATENCY_SAMPLES_NUMBER = 128;
+    private static final int MIN_LATENCY_SAMPLES_FOR_HEDGING = 16;
+
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final double multiplier;
+    private final double jitter;
+    private final long attemptTimeoutMillis;
+    private final double hedgePercentile;
+    // attempts are executed here if they need separate threads (timeouts or hedging are used)
+    private final ExecutorService attemptExecutor;
+
+    private final AtomicLongArray latencySamples = new AtomicLongArray(LATENCY_SAMPLES_NUMBER); // in nanoseconds
+    private final AtomicLong latencySamplesCount = new AtomicLong(0); // long, so it never wraps to negative
+    // percentile is recomputed only after new sample is recorded, not on every check of running attempt
+    private volatile HedgeDelay hedgeDelay = new HedgeDelay(-1, -1);
+
+    public RetryPolicy(int maxAttempts, long initialBackoffMillis, long maxBackoffMillis, double multiplier,
+                       double jitter, long attemptTimeoutMillis, double hedgePercentile){
+        this(maxAttempts, initialBackoffMillis, maxBackoffMillis, multiplier, jitter, attemptTimeoutMillis,
+                hedgePercentile, TaskExecutors.attemptThreads());
+    }
+
+    private RetryPolicy(int maxAttempts, long initialBackoffMillis, long maxBackoffMillis, double multiplier,
+                        double jitter, long attemptTimeoutMillis, double hedgePercentile,
+                        ExecutorService attemptExecutor){
+        if (maxAttempts <= 0){
+            throw new IllegalArgumentException("maxAttempts must be > 0");
+        }
+        if (initialBackoffMillis < 0 || maxBackoffMillis < initialBackoffMillis){
+            throw new IllegalArgumentException("Must be 0 <= initialBackoffMillis <= maxBackoffMillis");
+        }
+        if (multiplier < 1){
+            throw new IllegalArgumentException("multiplier must be >= 1");
+        }
+        if (jitter < 0 || jitter > 1){
+            throw new IllegalArgumentException("jitter must be in [0, 1]");
+        }
+        if (attemptTimeoutMillis < 0){
+            throw new IllegalArgumentException("attemptTimeoutMillis must be >= 0");
+        }
+        if (hedgePercentile < 0 || hedgePercentile >= 100){
+            throw new IllegalArgumentException("hedgePercentile must be in [0, 100)");
+        }
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.multiplier = multiplier;
+        this.jitter = jitter;
+        this.attemptTimeoutMillis = attemptTimeoutMillis;
+        this.hedgePercentile = hedgePercentile;
+        this.attemptExecutor = attemptExecutor;
+    }
+
+    // attempts are made one after another without delays (it is how task system always worked)
+    public static RetryPolicy immediate(int maxAttempts){
+        return new RetryPolicy(maxAttempts, 0, 0, 1, 0, 0, 0);
+    }
+
+    // delays between attempts grow twice with every attempt, half of delay is random
+    public static RetryPolicy exponentialBackoff(int maxAttempts, long initialBackoffMillis, long maxBackoffMillis){
+        return new RetryPolicy(maxAttempts, initialBackoffMillis, maxBackoffMillis, 2, 0.5, 0, 0);
+    }
+
+    /*
+        Settings of policy as one word, so it can be sent to worker process (see WorkerMain):
+        "<max attempts>:<initial backoff>:<max backoff>:<multiplier>:<jitter>:<attempt timeout>:<hedge percentile>".
+        Latencies of attempts aren't sent, worker collects its own ones
+     */
+    public String toSpec(){
+        return maxAttempts + ":" + initialBackoffMillis + ":" + maxBackoffMillis + ":" + multiplier + ":" +
+                jitter + ":" + attemptTimeoutMillis + ":" + hedgePercentile;
+    }
+
+    public static RetryPolicy fromSpec(String spec){
+        String[] parts = spec.split(":");
+        if (parts.length != 7){
+            throw new IllegalArgumentException("Malformed spec of retry policy: " + spec);
+        }
+        return new RetryPolicy(Integer.parseInt(parts[0]), Long.parseLong(parts[1]), Long.parseLong(parts[2]),
+                Double.parseDouble(parts[3]), Double.parseDouble(parts[4]), Long.parseLong(parts[5]),
+                Double.parseDouble(parts[6]));
+    }
+
+    public RetryPolicy withAttemptTimeout(long attemptTimeoutMillis){
+        return new RetryPolicy(maxAttempts, initialBackoffMillis, maxBackoffMillis, multiplier,
+                jitter, attemptTimeoutMillis, hedgePercentile, attemptExecutor);
+    }
+
+    public RetryPolicy withHedging(double hedgePercentile){
+        return new RetryPolicy(maxAttempts, initialBackoffMillis, maxBackoffMillis, multiplier,
+                jitter, attemptTimeoutMillis, hedgePercentile, attemptExecutor);
+    }
+
+    // e.g. virtual threads, if tasks are also run by virtual threads (platform daemon threads by default)
+    public RetryPolicy withAttemptExecutor(ExecutorService attemptExecutor){
+        return new RetryPolicy(maxAttempts, initialBackoffMillis, maxBackoffMillis, multiplier,
+                jitter, attemptTimeoutMillis, hedgePercentile, attemptExecutor);
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public long getAttemptTimeoutMillis() {
+        return attemptTimeoutMillis;
+    }
+
+    public boolean isHedgingEnabled(){
+        return hedgePercentile > 0;
+    }
+
+    // true if attempts can't be executed right in task thread
+    public boolean needsAttemptThreads(){
+        return attemptTimeoutMillis > 0 || isHedgingEnabled();
+    }
+
+    ExecutorService getAttemptExecutor(){
+        return attemptExecutor;
+    }
+
+    // delay before attempt with given number (attempts are numbered from 1), in milliseconds
+    public long getBackoffMillis(int attempt){
+        if (attempt <= 1 || initialBackoffMillis == 0){
+            return 0;
+        }
+        double delay = initialBackoffMillis * Math.pow(multiplier, attempt - 2);
+        delay = Math.min(delay, maxBackoffMillis);
+        double randomPart = delay * jitter * ThreadLocalRandom.current().nextDouble();
+        return (long)(delay * (1 - jitter) + randomPart);
+    }
+
+    public void recordAttemptLatency(long latencyNanos){
+        long sampleIndex = latencySamplesCount.getAndIncrement();
+        latencySamples.set((int)(sampleIndex % LATENCY_SAMPLES_NUMBER), latencyNanos);
+    }
+
+    /*
+        Returns time (in nanoseconds) after which hedged attempt should be started,
+        or -1 if hedging is disabled or there are not enough latency samples yet
+     */
+    public long getHedgeDelayNanos(){
+        if (!isHedgingEnabled()){
+            return -1;
+        }
+        long samplesCount = latencySamplesCount.get();
+        HedgeDelay lastHedgeDelay = hedgeDelay;
+        if (lastHedgeDelay.samplesCount == samplesCount){
+            return lastHedgeDelay.delayNanos;
+        }
+        int samplesNumber = (int)Math.min(samplesCount, LATENCY_SAMPLES_NUMBER);
+        if (samplesNumber < MIN_LATENCY_SAMPLES_FOR_HEDGING){
+            return -1;
+        }
+
+        // concurrent callers may compute it both, then any of them is cached
+        long[] samples = new long[samplesNumber];
+        for (int i = 0; i < samplesNumber; i++){
+            samples[i] = latencySamples.get(i);
+        }
+        Arrays.sort(samples);
+        int percentileIndex = (int)Math.ceil(hedgePercentile / 100 * samplesNumber) - 1;
+        long delayNanos = samples[Math.max(percentileIndex, 0)];
+        hedgeDelay = new HedgeDelay(samplesCount, delayNanos);
+        return delayNanos;
+    }
+
+    // percentile together with value of latencySamplesCount, for which it was computed
+    private static class HedgeDelay {
+        private final long samplesCount;
+        private final long delayNanos;
+
+        private HedgeDelay(long samplesCount, long delayNanos){
+            this.samplesCount = samplesCount;
+            this.delayNanos = delayNanos;
+        }
+    }
+}
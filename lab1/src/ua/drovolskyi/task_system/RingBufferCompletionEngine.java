@@ -0,0 +1,223 @@
+package ua.drovolskyi.task_system;
+
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+    In-process backend without syscalls: every task gets its own SpscResultRing (task thread is the only
+    producer, manager thread is the only consumer), so result is handed over by a few plain writes
+    and one release store, instead of writing to pipe and waking up Selector.
+
+    How manager waits for results is chosen by WaitStrategy:
+     - BUSY_SPIN - manager never leaves CPU, so result is noticed as soon as possible
+     - YIELD - manager spins for a while, then gives CPU to other threads between checks
+     - PARK - manager spins for a while, then parks, and task unparks it after writing result
+    BUSY_SPIN and YIELD keep one core busy while tasks are computing, so they are worth only if
+    functions are fast and there are spare cores; PARK is the default one.
+    Every await() checks all tasks, that haven't sent result yet, so it is meant for graphs
+    with not too many components
+ */
+public class RingBufferCompletionEngine implements CompletionEngine {
+    private static final int RING_CAPACITY = 4; // task sends one message, but ResultSink allows more
+    private static final int SPINS_BEFORE_YIELD = 100;
+    private static final int SPINS_BEFORE_PARK = 100;
+
+    private final WaitStrategy waitStrategy;
+    private final List<TaskRing> rings = new ArrayList<>(); // of tasks, that haven't sent result yet
+    private volatile Thread waiter; // manager thread, while it is parked (PARK only)
+    private volatile boolean wakeupRequested = false;
+    private volatile boolean closed = false;
+
+    public RingBufferCompletionEngine(){
+        this(WaitStrategy.PARK);
+    }
+
+    public RingBufferCompletionEngine(WaitStrategy waitStrategy){
+        this.waitStrategy = waitStrategy;
+    }
+
+    // must be called by thread, that calls await()
+    @Override
+    public ResultSink register(TaskInfo taskInfo) {
+        TaskRing taskRing = new TaskRing(taskInfo);
+        rings.add(taskRing);
+        return new ResultSink() {
+            @Override
+            public void sendResult(double result) {
+                send(taskRing.ring, SUCCESS, result);
+            }
+
+            @Override
+            public void sendFailure(int failureId) {
+                send(taskRing.ring, failureId, 0);
+            }
+        };
+    }
+
+    // called by task thread
+    private void send(SpscResultRing ring, int status, double result){
+        while (!ring.offer(status, result)){
+            if (closed){
+                return; // nobody reads results anymore
+            }
+            Thread.yield();
+        }
+        signal();
+    }
+
+    private void signal(){
+        if (waitStrategy != WaitStrategy.PARK){
+            return; // manager checks rings by itself
+        }
+        // message (or wakeup request) must be visible before waiter is read, see park()
+        VarHandle.fullFence();
+        Thread parkedThread = waiter;
+        if (parkedThread != null){
+            LockSupport.unpark(parkedThread);
+        }
+    }
+
+    /*
+        Interruption of waiting thread makes await() return, as wakeup() does. Interrupt flag isn't cleared,
+        so caller sees it and stops waiting (every next await() returns at once, as park() doesn't park)
+     */
+    @Override
+    public int await(long timeoutMillis) {
+        if (closed){
+            rings.clear(); // list is changed only by waiting thread, see close(); then just wait for wakeup
+        }
+        long deadline = System.nanoTime() + timeoutMillis * 1_000_000;
+        int idleRounds = 0;
+        while (true){
+            int finishedTasks = receiveResults();
+            if (finishedTasks > 0 || wakeupRequested || Thread.currentThread().isInterrupted() ||
+                    (timeoutMillis != 0 && deadline - System.nanoTime() <= 0)){
+                wakeupRequested = false;
+                Metrics.GLOBAL.recordSelectorWakeup();
+                return finishedTasks;
+            }
+            idle(idleRounds++, timeoutMillis == 0 ? 0 : deadline);
+        }
+    }
+
+    // fills TaskInfos of tasks, that have sent results
+    private int receiveResults(){
+        int finishedTasks = 0;
+        Iterator<TaskRing> iterator = rings.iterator();
+        while (iterator.hasNext()){
+            TaskRing taskRing = iterator.next();
+            // each task sends only one result, so its ring is not needed anymore
+            if (taskRing.ring.drain(taskRing, 1) > 0){
+                iterator.remove();
+                finishedTasks++;
+            }
+        }
+        return finishedTasks;
+    }
+
+    private boolean hasResults(){
+        for (TaskRing taskRing : rings){
+            if (!taskRing.ring.isEmpty()){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // deadline is 0 if there is no timeout
+    private void idle(int idleRounds, long deadline){
+        switch (waitStrategy){
+            case BUSY_SPIN:
+                Thread.onSpinWait();
+                break;
+            case YIELD:
+                if (idleRounds < SPINS_BEFORE_YIELD){
+                    Thread.onSpinWait();
+                }
+                else{
+                    Thread.yield();
+                }
+                break;
+            case PARK:
+                if (idleRounds < SPINS_BEFORE_PARK){
+                    Thread.onSpinWait();
+                }
+                else{
+                    park(deadline);
+                }
+                break;
+        }
+    }
+
+    private void park(long deadline){
+        waiter = Thread.currentThread();
+        // if task writes result after this check, it sees waiter and unparks it, so park() returns at once
+        if (!hasResults() && !wakeupRequested){
+            if (deadline == 0){
+                LockSupport.park(this);
+            }
+            else{
+                LockSupport.parkNanos(this, deadline - System.nanoTime());
+            }
+        }
+        waiter = null;
+    }
+
+    @Override
+    public void wakeup() {
+        wakeupRequested = true;
+        signal();
+    }
+
+    // rings of previous tasks are just forgotten, tasks write only into their own rings
+    @Override
+    public boolean reset() {
+        if (closed){
+            return false;
+        }
+        rings.clear();
+        wakeupRequested = false;
+        return true;
+    }
+
+    // can be called from any thread (e.g. from shutdown hook), so rings are released by waiting thread
+    @Override
+    public void close() {
+        closed = true;
+        wakeup();
+    }
+
+    public enum WaitStrategy {
+        BUSY_SPIN, YIELD, PARK;
+
+        static WaitStrategy byName(String name){
+            switch (name){
+                case "spin":
+                    return BUSY_SPIN;
+                case "yield":
+                    return YIELD;
+                case "park":
+                    return PARK;
+                default:
+                    throw new IllegalArgumentException("Unknown wait strategy: " + name);
+            }
+        }
+    }
+
+    private static class TaskRing implements SpscResultRing.ResultHandler {
+        private final TaskInfo taskInfo;
+        private final SpscResultRing ring = new SpscResultRing(RING_CAPACITY);
+
+        private TaskRing(TaskInfo taskInfo){
+            this.taskInfo = taskInfo;
+        }
+
+        @Override
+        public void onResult(int status, double value) {
+            taskInfo.finish(status, value);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package ua.drovolskyi.task_system;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+
+/*
+    Attachment of SelectionKey, that handles its channel when it is ready
+    (so channels, that aren't result pipes, can share Selector with them, see MultiplexedCompletionEngine.addHandler)
+ */
+public interface SelectionHandler {
+    void onReady(SelectionKey key) throws IOException;
+}
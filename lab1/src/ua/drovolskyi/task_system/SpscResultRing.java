@@ -0,0 +1,112 @@
+package ua.drovolskyi.task_system;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/*
+    Bounded lock-free queue of results for exactly one producer thread and one consumer thread.
+    Slots are primitive arrays (status and value of result), so nothing is allocated per message.
+
+    Ring is described by two sequences: number of written messages (changed only by producer)
+    and number of read messages (changed only by consumer), so no CAS is needed.
+    Every sequence is padded to its own cache line, so that producer and consumer don't invalidate
+    cache line of each other (false sharing). Each side also keeps last seen value of sequence of other side
+    next to its own one, and reads sequence of other side only when ring looks full (or empty)
+ */
+public class SpscResultRing {
+    private final int mask;
+    private final int[] statuses;
+    private final double[] values;
+    private final PaddedSequence written = new PaddedSequence(); // cached value is read sequence
+    private final PaddedSequence read = new PaddedSequence(); // cached value is written sequence
+
+    // capacity must be power of 2
+    public SpscResultRing(int capacity){
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1){
+            throw new IllegalArgumentException("capacity must be power of 2");
+        }
+        mask = capacity - 1;
+        statuses = new int[capacity];
+        values = new double[capacity];
+    }
+
+    /*
+        Called by producer only.
+        Returns false if ring is full (message isn't written)
+     */
+    public boolean offer(int status, double value){
+        long sequence = written.value; // producer is the only writer, so its own value is always actual
+        if (sequence - written.cachedOther > mask){
+            written.cachedOther = read.value;
+            if (sequence - written.cachedOther > mask){
+                return false;
+            }
+        }
+        int index = (int)sequence & mask;
+        statuses[index] = status;
+        values[index] = value;
+        written.publish(sequence + 1); // slots are written before consumer can see new sequence
+        return true;
+    }
+
+    /*
+        Called by consumer only.
+        Passes at most maxMessages messages to handler, returns number of them
+     */
+    public int drain(ResultHandler handler, int maxMessages){
+        long sequence = read.value;
+        if (sequence == read.cachedOther){
+            read.cachedOther = written.value;
+        }
+        int messages = (int)Math.min(read.cachedOther - sequence, maxMessages);
+        for (int i = 0; i < messages; i++){
+            int index = (int)(sequence + i) & mask;
+            handler.onResult(statuses[index], values[index]);
+        }
+        if (messages > 0){
+            read.publish(sequence + messages); // slots are read before producer can reuse them
+        }
+        return messages;
+    }
+
+    // called by consumer only
+    public boolean isEmpty(){
+        return read.value == written.value;
+    }
+
+    public interface ResultHandler {
+        void onResult(int status, double value);
+    }
+
+
+    /*
+        Fields of superclass are laid out before fields of subclass, so value and cachedOther
+        are separated from other objects by 7 longs (56 bytes) on both sides
+     */
+    private static class LeftPadding {
+        protected long p01, p02, p03, p04, p05, p06, p07;
+    }
+
+    private static class SequenceValue extends LeftPadding {
+        private static final VarHandle VALUE;
+        static {
+            try {
+                VALUE = MethodHandles.lookup().findVarHandle(SequenceValue.class, "value", long.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        protected volatile long value = 0;
+        protected long cachedOther = 0; // used only by thread, that owns this sequence
+
+        // release store: cheaper than volatile write, but previous writes can't be moved after it
+        protected void publish(long newValue){
+            VALUE.setRelease(this, newValue);
+        }
+    }
+
+    private static class PaddedSequence extends SequenceValue {
+        protected long p11, p12, p13, p14, p15, p16, p17;
+    }
+}
@@ -0,0 +1,234 @@
+package ua.drovolskyi.task_system;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/*
+    Functions with configurable latency and fails, so that task system can be tested without lab1.jar
+    and with latency profiles, that are close to production ones. Profiles are read from properties file:
+
+        seed=42                       # optional, 0 by default
+        f.latency=lognormal:200:0.5   # required, see below
+        f.soft-fail=0.05              # probability of soft fail, 0 by default
+        f.hard-fail=0.01              # probability of hard fail, 0 by default
+        f.mode=cpu                    # sleep (default) or cpu - latency is CPU time spent in busy loop
+        f.factor=1.5                  # result is factor * x, 1 by default
+
+    Latency distributions (in milliseconds):
+     - "fixed:<MS>"
+     - "lognormal:<MEDIAN MS>:<SIGMA>"
+     - "pareto:<MIN MS>:<ALPHA>[:<MAX MS>]" - heavy tail, it is lower for greater alpha
+
+    Randomness is seeded: every function draws its samples from its own sequence, n-th call of function
+    always gets n-th sample. So computations with one worker are reproducible; with several workers
+    the same samples are drawn, but they are assigned to calls in order, in which workers make them
+ */
+public class SyntheticFunctionProvider implements FunctionProvider {
+    private final Map<String, SyntheticFunction> functions = new TreeMap<>();
+
+    public SyntheticFunctionProvider(Properties profiles){
+        long seed = Long.parseLong(profiles.getProperty("seed", "0"));
+        for (String key : profiles.stringPropertyNames()){
+            if (!key.endsWith(".latency")){
+                continue;
+            }
+            String name = key.substring(0, key.length() - ".latency".length());
+            try {
+                functions.put(name, new SyntheticFunction(name, profiles, seed));
+            } catch (IllegalArgumentException e){
+                throw new IllegalArgumentException("Profile of function " + name + ": " + e.getMessage(), e);
+            }
+        }
+        if (functions.isEmpty()){
+            throw new IllegalArgumentException("There are no profiles of functions (<name>.latency)");
+        }
+    }
+
+    public static SyntheticFunctionProvider fromFile(String path){
+        try (Reader reader = new FileReader(path)){
+            Properties profiles = new Properties();
+            profiles.load(reader);
+            return new SyntheticFunctionProvider(profiles);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Can't read profiles: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Function<Integer, Optional<Optional<Double>>> getFunction(String name) {
+        SyntheticFunction function = functions.get(name);
+        if (function == null){
+            throw new IllegalArgumentException("Unknown function: " + name + ", functions are: " + functions.keySet());
+        }
+        return function;
+    }
+
+    // SplitMix64 finalizer, so that close seeds give unrelated sequences
+    private static long mix(long z){
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+
+    private static class SyntheticFunction implements Function<Integer, Optional<Optional<Double>>> {
+        private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+        private final LatencyDistribution latency;
+        private final double softFailProbability;
+        private final double hardFailProbability;
+        private final boolean cpuBound;
+        private final double factor;
+        private final long streamSeed;
+        private final AtomicLong callsNumber = new AtomicLong(0);
+
+        private SyntheticFunction(String name, Properties profiles, long seed){
+            latency = LatencyDistribution.parse(profiles.getProperty(name + ".latency"));
+            softFailProbability = parseProbability(profiles.getProperty(name + ".soft-fail", "0"));
+            hardFailProbability = parseProbability(profiles.getProperty(name + ".hard-fail", "0"));
+            if (softFailProbability + hardFailProbability > 1){
+                throw new IllegalArgumentException("sum of probabilities of fails must be <= 1");
+            }
+            String mode = profiles.getProperty(name + ".mode", "sleep");
+            if (!mode.equals("sleep") && !mode.equals("cpu")){
+                throw new IllegalArgumentException("mode must be sleep or cpu");
+            }
+            cpuBound = mode.equals("cpu");
+            factor = Double.parseDouble(profiles.getProperty(name + ".factor", "1"));
+            streamSeed = mix(seed ^ mix(name.hashCode()));
+        }
+
+        private static double parseProbability(String value){
+            double probability = Double.parseDouble(value);
+            if (!(probability >= 0 && probability <= 1)){
+                throw new IllegalArgumentException("probability must be in [0, 1]: " + value);
+            }
+            return probability;
+        }
+
+        @Override
+        public Optional<Optional<Double>> apply(Integer x) {
+            SplittableRandom random = new SplittableRandom(mix(streamSeed + callsNumber.getAndIncrement() * GOLDEN_GAMMA));
+            long latencyNanos = (long)(latency.sample(random) * 1_000_000);
+            double outcome = random.nextDouble();
+
+            if (cpuBound){
+                spin(latencyNanos);
+            }
+            else{
+                try {
+                    TimeUnit.NANOSECONDS.sleep(latencyNanos);
+                } catch (InterruptedException e) {
+                    throw TrialFunctions.cancelled();
+                }
+            }
+
+            if (outcome < softFailProbability){
+                return Optional.empty();
+            }
+            if (outcome < softFailProbability + hardFailProbability){
+                return Optional.of(Optional.empty());
+            }
+            return Optional.of(Optional.of(factor * x));
+        }
+
+        /*
+            Keeps core busy, like CPU-bound function, until thread consumes given CPU time
+            (so under contention it takes longer); stops if thread is interrupted
+         */
+        private static void spin(long nanos){
+            long deadline = getThreadTime() + nanos;
+            long state = nanos;
+            while (getThreadTime() - deadline < 0){
+                for (int i = 0; i < 1000; i++){
+                    state = mix(state);
+                }
+                if (Thread.currentThread().isInterrupted()){
+                    throw TrialFunctions.cancelled();
+                }
+            }
+            if (state == 0){ // never true in practice, it only keeps JIT from removing the loop
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    // CPU time of current thread, or wall time if JVM doesn't measure CPU time
+    private static long getThreadTime(){
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        return threads.isCurrentThreadCpuTimeSupported() ?
+                threads.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+
+    // distribution of latency in milliseconds
+    private interface LatencyDistribution {
+        double sample(SplittableRandom random);
+
+        static LatencyDistribution parse(String spec){
+            String[] parts = spec.trim().split(":");
+            try {
+                switch (parts[0]){
+                    case "fixed": {
+                        checkLength(parts, 2, 2);
+                        double millis = parseNonNegative(parts[1]);
+                        return random -> millis;
+                    }
+                    case "lognormal": {
+                        checkLength(parts, 3, 3);
+                        double median = parseNonNegative(parts[1]);
+                        double sigma = parseNonNegative(parts[2]);
+                        return random -> median * Math.exp(sigma * nextGaussian(random));
+                    }
+                    case "pareto": {
+                        checkLength(parts, 3, 4);
+                        double min = parseNonNegative(parts[1]);
+                        double alpha = Double.parseDouble(parts[2]);
+                        if (!(alpha > 0)){
+                            throw new IllegalArgumentException("alpha must be > 0");
+                        }
+                        double max = parts.length == 4 ? parseNonNegative(parts[3]) : Double.MAX_VALUE;
+                        // inverse of CDF; 1 - u is in (0, 1], so result is finite
+                        return random -> Math.min(min / Math.pow(1 - random.nextDouble(), 1 / alpha), max);
+                    }
+                    default:
+                        throw new IllegalArgumentException("unknown distribution " + parts[0] +
+                                ", distributions are: fixed, lognormal, pareto");
+                }
+            } catch (NumberFormatException e){
+                throw new IllegalArgumentException("parameters of distribution must be numbers: " + spec);
+            }
+        }
+
+        private static void checkLength(String[] parts, int min, int max){
+            if (parts.length < min || parts.length > max){
+                throw new IllegalArgumentException("wrong number of parameters of distribution " + parts[0]);
+            }
+        }
+
+        private static double parseNonNegative(String value){
+            double number = Double.parseDouble(value);
+            if (!(number >= 0)){
+                throw new IllegalArgumentException("parameter of distribution must be >= 0: " + value);
+            }
+            return number;
+        }
+
+        // Box-Muller transform (SplittableRandom has no nextGaussian() before Java 17)
+        private static double nextGaussian(SplittableRandom random){
+            double u = 1 - random.nextDouble(); // in (0, 1], so logarithm is finite
+            double v = random.nextDouble();
+            return Math.sqrt(-2 * Math.log(u)) * Math.cos(2 * Math.PI * v);
+        }
+    }
+}
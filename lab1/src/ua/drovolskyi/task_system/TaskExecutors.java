@@ -0,0 +1,102 @@
+package ua.drovolskyi.task_system;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// executors, that can run tasks of task system
+public class TaskExecutors {
+    public static final int DEFAULT_MAX_QUEUED = 1024;
+
+    // new platform daemon thread for every task (it is how Manager worked before shared())
+    public static Executor threadPerTask(){
+        return task -> {
+            Thread thread = new Thread(task);
+            thread.setDaemon(true);
+            thread.start();
+        };
+    }
+
+    /*
+        Fixed number of platform daemon threads. Threads are started at once (pre-warmed),
+        so the first tasks don't pay for creation of threads
+     */
+    public static ExecutorService fixedPool(int threadsNumber){
+        AtomicInteger threadIndex = new AtomicInteger(0);
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threadsNumber, threadsNumber,
+                0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), task -> {
+            Thread thread = new Thread(task, "task-worker-" + threadIndex.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        pool.prestartAllCoreThreads();
+        return pool;
+    }
+
+    /*
+        Adaptive concurrency limit (see AdaptiveExecutor) in front of executor, that can run up to maxLimit
+        tasks at once. Limit starts from number of cores (but at least 2, so that f and g of one evaluation
+        are computed simultaneously). If shedding is disabled, excess tasks only wait in queue
+     */
+    public static AdaptiveExecutor adaptive(ExecutorService executor, int maxLimit, boolean shedding){
+        int initialLimit = Math.min(Math.max(Runtime.getRuntime().availableProcessors(), 2), maxLimit);
+        return new AdaptiveExecutor(executor, initialLimit, 1, maxLimit, shedding ? DEFAULT_MAX_QUEUED : -1);
+    }
+
+    // pre-warmed pool with adaptive limit, that is shared by all managers of JVM (see Manager)
+    public static AdaptiveExecutor shared(){
+        return SharedExecutorHolder.EXECUTOR;
+    }
+
+    // executor is created at first call of shared()
+    private static class SharedExecutorHolder {
+        private static final int THREADS_NUMBER = 8 * Runtime.getRuntime().availableProcessors();
+        private static final AdaptiveExecutor EXECUTOR = adaptive(fixedPool(THREADS_NUMBER), THREADS_NUMBER, true);
+    }
+
+    /*
+        Platform daemon threads, that are created on demand and reused. Attempts of tasks, that need
+        separate threads (see RetryPolicy), run here: tasks wait for them, so they can't share pool with tasks
+     */
+    public static ExecutorService attemptThreads(){
+        return AttemptExecutorHolder.EXECUTOR;
+    }
+
+    private static class AttemptExecutorHolder {
+        private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static boolean isVirtualThreadsSupported(){
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /*
+        New virtual thread for every task. Tasks mostly sleep inside of functions,
+        so thousands of them don't need thousands of platform threads.
+        Virtual threads appeared in Java 21, so method is called via reflection
+        (project is still compiled for older Java)
+     */
+    public static ExecutorService virtualThreadPerTask(){
+        try {
+            return (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException e) {
+            throw new UnsupportedOperationException("Virtual threads require Java 21 or newer");
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
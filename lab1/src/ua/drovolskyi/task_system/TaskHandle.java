@@ -0,0 +1,49 @@
+package ua.drovolskyi.task_system;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+/*
+    Task, that is given to Executor. Manager uses it instead of Thread:
+    cancel(true) interrupts task, and awaitStopped() waits until task really leaves run().
+    Task isn't interrupted while it is reporting its result to sink (see CancellableResultSink)
+ */
+public class TaskHandle extends FutureTask<Void> {
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private final CancellableResultSink sink;
+    private volatile boolean started = false;
+
+    public TaskHandle(Runnable task, CancellableResultSink sink){
+        super(task, null);
+        this.sink = sink;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return super.cancel(mayInterruptIfRunning && sink.cancel());
+    }
+
+    // true if task won't report its result, because it is cancelled before it started reporting
+    public boolean isResultCancelled(){
+        return sink.isCancelled();
+    }
+
+    @Override
+    public void run() {
+        started = true;
+        try {
+            super.run();
+        } finally {
+            stopped.countDown();
+        }
+    }
+
+    // returns false if task is still running after timeout
+    public boolean awaitStopped(long timeoutMillis) throws InterruptedException {
+        if (!started && isCancelled()){ // e.g. task waits in queue of executor, it will never run
+            return true;
+        }
+        return stopped.await(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+}
@@ -1,9 +1,31 @@
 package ua.drovolskyi.task_system;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/*
+    State of task, that can be read from any thread (e.g. by shutdown hook or control endpoint).
+    Status and result are changed together by compare-and-set of immutable State:
+    NOT_STARTED -> STARTED -> FINISHED_SOFTFAIL | FINISHED_HARDFAIL | FINISHED_SUCCESSFULLY | TIMED_OUT,
+    so task is finished only once, and result is always visible together with its status.
+    While task is computed, its thread publishes progress (number of current attempt, start time
+    of that attempt, total time of finished attempts) through atomic fields, without locks
+ */
 public class TaskInfo {
-    private Status status = Status.NOT_STARTED;
-    private double result = 0;
+    private static final State NOT_STARTED = new State(Status.NOT_STARTED, 0);
+    private static final State STARTED = new State(Status.STARTED, 0);
+
+    private final AtomicReference<State> state = new AtomicReference<>(NOT_STARTED);
     private final int MAX_COMPUTATION_ATTEMPTS;
+    private final CompletableFuture<TaskInfo> completion = new CompletableFuture<>();
+
+    // progress
+    private final AtomicInteger currentAttempt = new AtomicInteger(0);
+    private volatile long attemptStartTime = 0; // System.nanoTime() at start of current attempt
+    private final AtomicLong computeTimeNanos = new AtomicLong(0);
 
     public TaskInfo (final int MAX_COMPUTATION_ATTEMPTS){
         this.MAX_COMPUTATION_ATTEMPTS = MAX_COMPUTATION_ATTEMPTS;
@@ -13,39 +35,163 @@ public class TaskInfo {
         return MAX_COMPUTATION_ATTEMPTS;
     }
 
-    public void setStatus(Status status){
-        this.status = status;
+    // task is submitted for computing
+    public void start(){
+        if (!state.compareAndSet(NOT_STARTED, STARTED)){
+            throw new IllegalStateException("Task is already started");
+        }
     }
 
     public Status getStatus(){
-        return status;
+        return state.get().status;
     }
 
     public boolean isFinishedSuccessfully(){
-        return status == Status.FINISHED_SUCCESSFULLY;
+        return getStatus() == Status.FINISHED_SUCCESSFULLY;
     }
 
-    public void setResult(double result){
-        if (status != Status.FINISHED_SUCCESSFULLY){
-            throw new IllegalStateException("Can't set result, because illegal state");
+    public double getResult() {
+        State current = state.get();
+        if (current.status != Status.FINISHED_SUCCESSFULLY){
+            throw new IllegalStateException("There is no result");
         }
-        this.result = result;
+        return current.result;
     }
 
-    public double getResult() {
-        if (status != Status.FINISHED_SUCCESSFULLY){
-            throw new IllegalStateException("There is no result");
+    public boolean isFinished(){
+        return getStatus().isFinished();
+    }
+
+    // future is completed when task is finished (successfully or not) or timed out
+    public CompletableFuture<TaskInfo> getCompletion(){
+        return completion;
+    }
+
+    /*
+        Fills taskInfo from returning code (see ResultSink) and completes its future.
+        result is ignored if task is not finished successfully.
+        Returns false if task is already finished or timed out (then its result isn't needed anymore)
+     */
+    public boolean finish(int returningCode, double result){
+        State finished;
+        if (returningCode == ResultSink.SUCCESS){
+            finished = new State(Status.FINISHED_SUCCESSFULLY, result);
+        } else if (returningCode == ResultSink.SOFT_FAIL){
+            finished = new State(Status.FINISHED_SOFTFAIL, 0);
+        } else if (returningCode == ResultSink.HARD_FAIL){
+            finished = new State(Status.FINISHED_HARDFAIL, 0);
+        } else {
+            throw new IllegalArgumentException("Unknown returning code: " + returningCode);
+        }
+        return transitionFromStarted(finished);
+    }
+
+    // task isn't finished before deadline of evaluation, its result won't be used; returns false if it is finished
+    public boolean timeOut(){
+        return transitionFromStarted(new State(Status.TIMED_OUT, 0));
+    }
+
+    private boolean transitionFromStarted(State newState){
+        if (!state.compareAndSet(STARTED, newState)){
+            if (state.get() == NOT_STARTED){
+                throw new IllegalStateException("Task isn't started");
+            }
+            return false;
+        }
+        completion.complete(this);
+        return true;
+    }
+
+    // called by thread of task before every attempt (hedged attempts can run simultaneously)
+    public void attemptStarted(int attempt){
+        attemptStartTime = System.nanoTime();
+        currentAttempt.accumulateAndGet(attempt, Math::max);
+    }
+
+    public void attemptFinished(long attemptTimeNanos){
+        computeTimeNanos.addAndGet(attemptTimeNanos);
+    }
+
+    // number of attempt, that is computed now (or was computed last), 0 if no attempt is started
+    public int getCurrentAttempt(){
+        return currentAttempt.get();
+    }
+
+    // time of current attempt, 0 if task isn't computing now
+    public long getCurrentAttemptMillis(){
+        long startTime = attemptStartTime;
+        if (startTime == 0 || getStatus() != Status.STARTED){
+            return 0;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+    }
+
+    // total time of finished attempts
+    public long getComputeTimeMillis(){
+        return TimeUnit.NANOSECONDS.toMillis(computeTimeNanos.get());
+    }
+
+    // describes state of task, that computes function with given name, e.g. "f(x) - hard fail"
+    public String describe(String functionName){
+        return describe(functionName, getStatus());
+    }
+
+    // describes task as if it was in given status (status, that was read before, so that they are consistent)
+    String describe(String functionName, Status status){
+        switch (status){
+            case NOT_STARTED:
+                return functionName + "(x) - not started";
+            case STARTED:
+                return functionName + "(x) - not finished";
+            case FINISHED_SOFTFAIL:
+                return functionName + "(x) - soft fail, " +
+                        "max number of attempts reached (" + MAX_COMPUTATION_ATTEMPTS + ")";
+            case FINISHED_HARDFAIL:
+                return functionName + "(x) - hard fail";
+            case TIMED_OUT:
+                return functionName + "(x) - timed out";
+            default:
+                return functionName + "(x) - computed";
         }
-        return result;
     }
 
+    // describe() with progress of task, e.g. "f(x) - not finished (attempt 2/5 for 120 ms, computed 300 ms)"
+    public String describeProgress(String functionName){
+        Status status = getStatus(); // status is read once, so description is consistent
+        int attempt = getCurrentAttempt();
+        if (attempt == 0){
+            return describe(functionName, status);
+        }
+        if (status == Status.STARTED){
+            return describe(functionName, status) + " (attempt " + attempt + "/" + MAX_COMPUTATION_ATTEMPTS +
+                    " for " + getCurrentAttemptMillis() + " ms, computed " + getComputeTimeMillis() + " ms)";
+        }
+        return describe(functionName, status) + " (attempts " + attempt + ", computed " +
+                getComputeTimeMillis() + " ms)";
+    }
+
+
+    private static class State {
+        private final Status status;
+        private final double result;
+
+        private State(Status status, double result){
+            this.status = status;
+            this.result = result;
+        }
+    }
 
     public static enum Status {
         NOT_STARTED,
         STARTED,
         FINISHED_SOFTFAIL,
         FINISHED_HARDFAIL,
-        FINISHED_SUCCESSFULLY
+        FINISHED_SUCCESSFULLY,
+        TIMED_OUT;
+
+        // task is computed (successfully or not); timed out task isn't finished
+        public boolean isFinished(){
+            return this == FINISHED_SOFTFAIL || this == FINISHED_HARDFAIL || this == FINISHED_SUCCESSFULLY;
+        }
     }
 }
-
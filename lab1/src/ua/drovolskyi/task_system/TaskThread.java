@@ -1,36 +1,60 @@
 package ua.drovolskyi.task_system;
 
 import java.io.IOException;
-import java.nio.ByteBuffer;
-import java.nio.channels.Pipe;
+import java.nio.channels.ClosedByInterruptException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
 public class TaskThread implements Runnable{
     private final int x;
     private Function<Integer, Optional<Optional<Double>>> function;
-    private final int MAX_COMPUTATION_ATTEMPTS;
-    private Pipe pipe;
+    private final RetryPolicy retryPolicy;
+    private final FunctionMetrics metrics; // can be null, then nothing is recorded
+    private final TaskInfo progress; // progress of computing is published here, can be null
+    private final long creationTime;
+    private ResultSink sink;
 
 
     public TaskThread(int x, Function<Integer, Optional<Optional<Double>>> function,
-                      final int MAX_COMPUTATION_ATTEMPTS, Pipe pipe){
+                      final int MAX_COMPUTATION_ATTEMPTS, ResultSink sink){
+        this(x, function, RetryPolicy.immediate(MAX_COMPUTATION_ATTEMPTS), sink);
+    }
+
+    public TaskThread(int x, Function<Integer, Optional<Optional<Double>>> function,
+                      RetryPolicy retryPolicy, ResultSink sink){
+        this(x, function, retryPolicy, null, null, sink);
+    }
+
+    public TaskThread(int x, Function<Integer, Optional<Optional<Double>>> function,
+                      RetryPolicy retryPolicy, FunctionMetrics metrics, TaskInfo progress, ResultSink sink){
         this.x = x;
         this.function = function;
-        this.MAX_COMPUTATION_ATTEMPTS = MAX_COMPUTATION_ATTEMPTS;
-        this.pipe = pipe;
+        this.retryPolicy = retryPolicy;
+        this.metrics = metrics;
+        this.progress = progress;
+        this.sink = sink;
+        this.creationTime = System.nanoTime();
     }
 
     @Override
     public void run(){
+        long startTime = System.nanoTime();
+        Metrics.GLOBAL.recordQueueWait(startTime - creationTime);
         try {
-            Optional<Optional<Double>> softOptional = null;
-
-            for (int i = 0; i < MAX_COMPUTATION_ATTEMPTS; i++){
-                softOptional = function.apply(x);
-                if (softOptional.isPresent()){
-                    break;
-                }
+            Optional<Optional<Double>> softOptional = retryPolicy.needsAttemptThreads() ?
+                    computeInAttemptThreads() : compute();
+            if (softOptional == null){
+                return; // task is cancelled, so its result isn't needed anymore
+            }
+            if (metrics != null){
+                metrics.recordTask(System.nanoTime() - startTime);
             }
 
             if (softOptional.isPresent()){
@@ -38,48 +62,217 @@ public class TaskThread implements Runnable{
 
                 if (hardOptional.isPresent()){
                     double result = hardOptional.get();
-                    sendResult(result);
+                    sink.sendResult(result);
                 }
                 else{
-                    sendFailure(2); // report manager about hard fail
+                    sink.sendFailure(ResultSink.HARD_FAIL); // report manager about hard fail
                 }
             }
             else{
-                sendFailure(1); // report manager about soft fail
+                sink.sendFailure(ResultSink.SOFT_FAIL); // report manager about soft fail
             }
+        } catch (CancellationException e) {
+            // task is cancelled while computing function, nothing to report
         } catch (RuntimeException e) {
             throw new RuntimeException(e);
             // no handling, because f() and g() considered not throwing exceptions
+        } catch (ClosedByInterruptException e){
+            // task is cancelled while reporting result, manager doesn't wait for it anymore
         } catch (IOException e){
             throw new RuntimeException(e);
         }
     }
 
-    private void sendResult(Double result) throws IOException {
-        ByteBuffer buf = ByteBuffer.allocate(12);
-        buf.clear();
-        buf.putInt(0);
-        buf.putDouble(result);
+    // attempts are made one by one in this thread; returns null if task is cancelled
+    private Optional<Optional<Double>> compute(){
+        Optional<Optional<Double>> softOptional = Optional.empty();
+
+        for (int attempt = 1; attempt <= retryPolicy.getMaxAttempts(); attempt++){
+            if (!sleepBackoff(attempt)){
+                return null;
+            }
+            long startTime = System.nanoTime();
+            if (progress != null){
+                progress.attemptStarted(attempt);
+            }
+            softOptional = function.apply(x);
+            recordAttempt(System.nanoTime() - startTime, softOptional);
+            if (softOptional.isPresent()){
+                break;
+            }
+        }
+        return softOptional;
+    }
+
+    /*
+        Every attempt is executed in separate thread, so that it can be interrupted by timeout,
+        and hedged attempt can be started while previous one is still running.
+        First attempt that finished with success or hard fail wins, other ones are interrupted.
+        Returns null if task is cancelled
+     */
+    private Optional<Optional<Double>> computeInAttemptThreads(){
+        ExecutorCompletionService<Optional<Optional<Double>>> completionService =
+                new ExecutorCompletionService<>(retryPolicy.getAttemptExecutor());
+        List<Attempt> runningAttempts = new ArrayList<>();
+        long attemptTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(retryPolicy.getAttemptTimeoutMillis());
+        int startedAttempts = 0;
+
+        try {
+            while (true){
+                if (runningAttempts.isEmpty()){
+                    if (startedAttempts == retryPolicy.getMaxAttempts()){
+                        return Optional.empty(); // soft fail, max number of attempts reached
+                    }
+                    startedAttempts++;
+                    if (!sleepBackoff(startedAttempts)){
+                        return null;
+                    }
+                    runningAttempts.add(startAttempt(completionService, startedAttempts));
+                }
 
-        buf.flip();
+                // wait for some attempt, but not longer than until nearest timeout or hedging time
+                long now = System.nanoTime();
+                long wakeupTime = Long.MAX_VALUE;
+                if (attemptTimeoutNanos > 0){
+                    for (Attempt attempt : runningAttempts){
+                        wakeupTime = Math.min(wakeupTime, attempt.startTime + attemptTimeoutNanos);
+                    }
+                }
+                long hedgeDelayNanos = retryPolicy.getHedgeDelayNanos();
+                // attempts are kept in order of start, so last one is the newest attempt, that is still running
+                Attempt newestAttempt = runningAttempts.get(runningAttempts.size() - 1);
+                boolean canHedge = hedgeDelayNanos >= 0 && startedAttempts < retryPolicy.getMaxAttempts();
+                if (canHedge){
+                    wakeupTime = Math.min(wakeupTime, newestAttempt.startTime + hedgeDelayNanos);
+                }
+
+                Future<Optional<Optional<Double>>> finishedAttempt = wakeupTime == Long.MAX_VALUE ?
+                        completionService.take() :
+                        completionService.poll(Math.max(wakeupTime - now, 0), TimeUnit.NANOSECONDS);
+
+                if (finishedAttempt != null){
+                    Attempt attempt = findAttempt(runningAttempts, finishedAttempt);
+                    if (attempt == null){
+                        continue; // attempt is already abandoned because of timeout
+                    }
+                    runningAttempts.remove(attempt);
+                    long latency = System.nanoTime() - attempt.startTime;
+
+                    Optional<Optional<Double>> softOptional = getAttemptResult(finishedAttempt);
+                    recordAttempt(latency, softOptional);
+                    if (softOptional.isPresent()){ // success or hard fail
+                        return softOptional;
+                    }
+                    continue; // soft fail
+                }
 
-        Pipe.SinkChannel sinkChannel = pipe.sink();
-        while(buf.hasRemaining()) {
-            sinkChannel.write(buf);
+                // interrupt attempts, that run too long, they are considered as soft fails
+                now = System.nanoTime();
+                if (attemptTimeoutNanos > 0){
+                    for (int i = runningAttempts.size() - 1; i >= 0; i--){
+                        Attempt attempt = runningAttempts.get(i);
+                        if (now - attempt.startTime >= attemptTimeoutNanos){
+                            attempt.future.cancel(true);
+                            runningAttempts.remove(i);
+                            if (metrics != null){
+                                metrics.recordAbandonedAttempt();
+                            }
+                            if (progress != null){
+                                progress.attemptFinished(now - attempt.startTime);
+                            }
+                        }
+                    }
+                }
+
+                // newest attempt runs too long, so start hedged one; if all attempts are timed out,
+                // next one is started as usual retry (after backoff)
+                if (canHedge && !runningAttempts.isEmpty()){
+                    newestAttempt = runningAttempts.get(runningAttempts.size() - 1); // it can be timed out above
+                    if (now - newestAttempt.startTime >= hedgeDelayNanos){
+                        startedAttempts++;
+                        runningAttempts.add(startAttempt(completionService, startedAttempts));
+                    }
+                }
+            }
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            for (Attempt attempt : runningAttempts){
+                attempt.future.cancel(true);
+            }
         }
     }
 
-    private void sendFailure(int failureId) throws IOException {
-        ByteBuffer buf = ByteBuffer.allocate(4);
-        buf.clear();
-        buf.putInt(failureId);
+    private void recordAttempt(long latencyNanos, Optional<Optional<Double>> softOptional){
+        retryPolicy.recordAttemptLatency(latencyNanos);
+        if (progress != null){
+            progress.attemptFinished(latencyNanos);
+        }
+        if (metrics != null){
+            int returningCode = softOptional.isEmpty() ? ResultSink.SOFT_FAIL :
+                    softOptional.get().isPresent() ? ResultSink.SUCCESS : ResultSink.HARD_FAIL;
+            metrics.recordAttempt(latencyNanos, returningCode);
+        }
+    }
 
-        buf.flip();
+    private Attempt startAttempt(ExecutorCompletionService<Optional<Optional<Double>>> completionService,
+                                 int attemptNumber){
+        long startTime = System.nanoTime();
+        if (progress != null){
+            progress.attemptStarted(attemptNumber);
+        }
+        return new Attempt(completionService.submit(() -> function.apply(x)), startTime);
+    }
 
-        Pipe.SinkChannel sinkChannel = pipe.sink();
-        while(buf.hasRemaining()) {
-            sinkChannel.write(buf);
+    private static Attempt findAttempt(List<Attempt> attempts, Future<Optional<Optional<Double>>> future){
+        for (Attempt attempt : attempts){
+            if (attempt.future == future){
+                return attempt;
+            }
         }
+        return null;
     }
 
+    private static Optional<Optional<Double>> getAttemptResult(Future<Optional<Optional<Double>>> attempt)
+            throws InterruptedException {
+        try {
+            return attempt.get();
+        } catch (ExecutionException e){
+            if (e.getCause() instanceof CancellationException){
+                return Optional.empty(); // attempt was interrupted, it is considered as soft fail
+            }
+            if (e.getCause() instanceof Error){
+                throw (Error)e.getCause();
+            }
+            throw (RuntimeException)e.getCause();
+        }
+    }
+
+    // returns false if task is cancelled while sleeping
+    private boolean sleepBackoff(int attempt){
+        if (Thread.currentThread().isInterrupted()){
+            return false;
+        }
+        long backoffMillis = retryPolicy.getBackoffMillis(attempt);
+        if (backoffMillis > 0){
+            try {
+                Thread.sleep(backoffMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static class Attempt {
+        private final Future<Optional<Optional<Double>>> future;
+        private final long startTime;
+
+        private Attempt(Future<Optional<Optional<Double>>> future, long startTime){
+            this.future = future;
+            this.startTime = startTime;
+        }
+    }
 }
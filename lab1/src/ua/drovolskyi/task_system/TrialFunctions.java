@@ -0,0 +1,49 @@
+package ua.drovolskyi.task_system;
+
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.function.Function;
+import os.lab1.compfuncs.advanced.DoubleOps;
+
+// functions f and g of task system, shared by all modes of work
+public class TrialFunctions {
+    public static final Function<Integer, Optional<Optional<Double>>> F = (Integer x) ->{
+        try {
+            return DoubleOps.trialF(x);
+        } catch (InterruptedException e) {
+            throw cancelled();
+        }
+    };
+
+    public static final Function<Integer, Optional<Optional<Double>>> G = (Integer x) ->{
+        try {
+            return DoubleOps.trialG(x);
+        } catch (InterruptedException e) {
+            throw cancelled();
+        }
+    };
+
+    // default provider of functions (see FunctionProvider)
+    public static final FunctionProvider PROVIDER = TrialFunctions::byName;
+
+    // used by worker processes, which receive name of function instead of function itself
+    public static Function<Integer, Optional<Optional<Double>>> byName(String name){
+        switch (name){
+            case "f":
+                return F;
+            case "g":
+                return G;
+            default:
+                throw new IllegalArgumentException("Unknown function: " + name);
+        }
+    }
+
+    /*
+        Task is interrupted while computing function, so it must stop.
+        Interrupt status is restored, so that caller can also see it
+     */
+    public static CancellationException cancelled(){
+        Thread.currentThread().interrupt();
+        return new CancellationException("Computation of function is interrupted");
+    }
+}
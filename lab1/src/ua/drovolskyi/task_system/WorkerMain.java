@@ -0,0 +1,90 @@
+package ua.drovolskyi.task_system;
+
+import java.io.BufferedReader;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.channels.WritableByteChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+    Entry point of worker process (see ProcessWorkerPool), argument is spec of function provider
+    (see FunctionProvider.load()), "trial" by default.
+    Commands are read from stdin, one per line:
+     - "run <taskId> <function name> <x> <retry policy>" - start computing function,
+       retry policy is given by RetryPolicy.toSpec(), worker keeps one policy per function and spec,
+       so latencies of attempts (for hedging) are collected across tasks
+     - "cancel <taskId>" - interrupt task
+    Results are written to stdout as frames (see FrameCodec), so nothing else may be printed to stdout.
+    Every task gets exactly one frame: its result, or CANCELLED frame if it is cancelled before it sends result
+    (so pool knows, that id of task is free).
+    Worker exits when its stdin is closed
+ */
+public class WorkerMain {
+    public static void main(String[] args) throws IOException {
+        FunctionProvider provider = FunctionProvider.load(args.length > 0 ? args[0] : FunctionProvider.DEFAULT_SPEC);
+        WritableByteChannel out = new FileOutputStream(FileDescriptor.out).getChannel();
+        ReentrantLock outWriteLock = new ReentrantLock(); // all tasks write frames to stdout
+        ExecutorService executor = Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task);
+            thread.setDaemon(true);
+            return thread;
+        });
+        Map<Integer, TaskHandle> tasks = new ConcurrentHashMap<>();
+        Map<String, RetryPolicy> retryPolicies = new HashMap<>(); // by function name and spec of policy
+
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+        String line;
+        while ((line = in.readLine()) != null){
+            String[] command = line.trim().split(" ");
+            switch (command[0]){
+                case "run": {
+                    int taskId = Integer.parseInt(command[1]);
+                    String functionName = command[2];
+                    int x = Integer.parseInt(command[3]);
+                    RetryPolicy retryPolicy = retryPolicies.computeIfAbsent(functionName + " " + command[4],
+                            key -> RetryPolicy.fromSpec(command[4]));
+
+                    CancellableResultSink sink = new CancellableResultSink(new FrameResultSink(out, outWriteLock, taskId));
+                    TaskHandle task = new TaskHandle(() -> {
+                        try {
+                            new TaskThread(x, provider.getFunction(functionName), retryPolicy, sink).run();
+                        } catch (IllegalArgumentException e){ // unknown function, it will never be computed
+                            try {
+                                sink.sendFailure(ResultSink.HARD_FAIL);
+                            } catch (IOException ioException) {
+                                throw new RuntimeException(ioException);
+                            }
+                        } finally {
+                            tasks.remove(taskId);
+                        }
+                    }, sink);
+                    tasks.put(taskId, task);
+                    executor.execute(task);
+                    break;
+                }
+                case "cancel": {
+                    int taskId = Integer.parseInt(command[1]);
+                    TaskHandle task = tasks.remove(taskId);
+                    if (task != null){
+                        task.cancel(true);
+                        // otherwise task is already sending its result, and that frame frees its id
+                        if (task.isResultCancelled()){
+                            FrameCodec.writeFailure(out, outWriteLock, taskId, FrameCodec.CANCELLED);
+                        }
+                    }
+                    break;
+                }
+                default:
+                    System.err.println("Worker: unknown command '" + line + "'");
+                    break;
+            }
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package os.lab1.compfuncs.advanced;
+
+import java.util.Optional;
+
+/*
+    Stand-in for DoubleOps from lab1.jar, it is compiled only if lab1.jar is missing (see pom.xml),
+    so that module can be built and benchmarked without it.
+    Results are deterministic: f(x) = 1.5x, g(x) = 2x; f(7) is soft fail, f(13) and g(14) are hard fails
+ */
+public class DoubleOps {
+    public static Optional<Optional<Double>> trialF(int x) throws InterruptedException {
+        Thread.sleep(200 + Math.floorMod(x, 7) * 50);
+        if (x == 13){
+            return Optional.of(Optional.empty());
+        }
+        if (x == 7){
+            return Optional.empty();
+        }
+        return Optional.of(Optional.of(x * 1.5));
+    }
+
+    public static Optional<Optional<Double>> trialG(int x) throws InterruptedException {
+        Thread.sleep(300);
+        if (x == 14){
+            return Optional.of(Optional.empty());
+        }
+        return Optional.of(Optional.of(x * 2.0));
+    }
+}
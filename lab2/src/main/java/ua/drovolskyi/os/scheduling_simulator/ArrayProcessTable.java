@@ -0,0 +1,179 @@
+package ua.drovolskyi.os.scheduling_simulator;
+
+import java.util.Arrays;
+
+/*
+    Fields of processes are kept in parallel primitive arrays (struct of arrays), element i is field of process
+    with id i. There are no objects per process (about 33 bytes per process instead of object with header,
+    and no references between them), so tens of millions of processes fit in heap, and GC has
+    only a few big arrays to look at
+ */
+public class ArrayProcessTable implements ProcessTable {
+    private static final Process.State[] STATES = Process.State.values();
+
+    private int size = 0;
+    private int[] requiredTimes;
+    private int[] usedTimes;
+    private int[] periodsBeforeBlocking;
+    private int[] usedTimesBeforeBlocking;
+    private int[] blockingPeriods;
+    private int[] awakeTimes;
+    private int[] blockingsCounts;
+    private int[] priorities;
+    private byte[] states; // ordinals of Process.State
+
+    public ArrayProcessTable(){
+        this(16);
+    }
+
+    // initialCapacity is number of processes, for which memory is allocated at once
+    public ArrayProcessTable(int initialCapacity){
+        if(initialCapacity <= 0){
+            throw new IllegalArgumentException("initialCapacity must be > 0");
+        }
+        requiredTimes = new int[initialCapacity];
+        usedTimes = new int[initialCapacity];
+        periodsBeforeBlocking = new int[initialCapacity];
+        usedTimesBeforeBlocking = new int[initialCapacity];
+        blockingPeriods = new int[initialCapacity];
+        awakeTimes = new int[initialCapacity];
+        blockingsCounts = new int[initialCapacity];
+        priorities = new int[initialCapacity];
+        states = new byte[initialCapacity];
+    }
+
+    @Override
+    public int add(int requiredTime, int periodBeforeBlocking, int blockingPeriod){
+        if(requiredTime <= 0){
+            throw new IllegalArgumentException("requiredTie must be > 0");
+        }
+        if(periodBeforeBlocking <= 0){
+            throw new IllegalArgumentException("periodBeforeBlocking must be > 0");
+        }
+        if(blockingPeriod <= 0){
+            throw new IllegalArgumentException("blockingPeriod must be > 0");
+        }
+        if(size == requiredTimes.length){
+            grow();
+        }
+        int id = size++;
+        requiredTimes[id] = requiredTime;
+        periodsBeforeBlocking[id] = periodBeforeBlocking;
+        blockingPeriods[id] = blockingPeriod;
+        states[id] = (byte)Process.State.READY.ordinal();
+        return id;
+    }
+
+    private void grow(){
+        int newCapacity = (int)Math.min(requiredTimes.length * 2L, Integer.MAX_VALUE - 8);
+        if(newCapacity == requiredTimes.length){
+            throw new IllegalStateException("Process table is too big");
+        }
+        requiredTimes = Arrays.copyOf(requiredTimes, newCapacity);
+        usedTimes = Arrays.copyOf(usedTimes, newCapacity);
+        periodsBeforeBlocking = Arrays.copyOf(periodsBeforeBlocking, newCapacity);
+        usedTimesBeforeBlocking = Arrays.copyOf(usedTimesBeforeBlocking, newCapacity);
+        blockingPeriods = Arrays.copyOf(blockingPeriods, newCapacity);
+        awakeTimes = Arrays.copyOf(awakeTimes, newCapacity);
+        blockingsCounts = Arrays.copyOf(blockingsCounts, newCapacity);
+        priorities = Arrays.copyOf(priorities, newCapacity);
+        states = Arrays.copyOf(states, newCapacity);
+    }
+
+    @Override
+    public int size(){
+        return size;
+    }
+
+    // burst is computed by the same functions as in Process.execute()
+    @Override
+    public int execute(int id, int burstDuration){
+        int remainingTime = requiredTimes[id] - usedTimes[id];
+        int remainingTimeBeforeBlocking = periodsBeforeBlocking[id] - usedTimesBeforeBlocking[id];
+        int usedBurstTime = Process.computeUsedBurstTime(remainingTime, remainingTimeBeforeBlocking, burstDuration);
+
+        usedTimesBeforeBlocking[id] += usedBurstTime;
+        usedTimes[id] += usedBurstTime;
+        Process.State state = Process.computeStateAfterBurst(remainingTime, remainingTimeBeforeBlocking, usedBurstTime);
+        states[id] = (byte)state.ordinal();
+        if(state == Process.State.BLOCKED){
+            blockingsCounts[id]++;
+        }
+        return usedBurstTime;
+    }
+
+    @Override
+    public int getPriority(int id){
+        return priorities[id];
+    }
+
+    @Override
+    public void setPriority(int id, int priority){
+        priorities[id] = priority;
+    }
+
+    @Override
+    public int getAwakeTime(int id){
+        return awakeTimes[id];
+    }
+
+    @Override
+    public void setAwakeTime(int id, int awakeTime){
+        awakeTimes[id] = awakeTime;
+    }
+
+    @Override
+    public Process.State getState(int id){
+        return STATES[states[id]];
+    }
+
+    @Override
+    public void setState(int id, Process.State state){
+        states[id] = (byte)state.ordinal();
+    }
+
+    @Override
+    public boolean isDone(int id){
+        return usedTimes[id] == requiredTimes[id];
+    }
+
+    @Override
+    public boolean isBlocked(int id){
+        return states[id] == Process.State.BLOCKED.ordinal();
+    }
+
+    @Override
+    public int getRequiredTime(int id){
+        return requiredTimes[id];
+    }
+
+    @Override
+    public int getUsedTime(int id){
+        return usedTimes[id];
+    }
+
+    @Override
+    public int getPeriodBeforeBlocking(int id){
+        return periodsBeforeBlocking[id];
+    }
+
+    @Override
+    public int getUsedTimeBeforeBlocking(int id){
+        return usedTimesBeforeBlocking[id];
+    }
+
+    @Override
+    public void resetUsedTimeBeforeBlocking(int id){
+        usedTimesBeforeBlocking[id] = 0;
+    }
+
+    @Override
+    public int getBlockingPeriod(int id){
+        return blockingPeriods[id];
+    }
+
+    @Override
+    public int getBlockingsCount(int id){
+        return blockingsCounts[id];
+    }
+}
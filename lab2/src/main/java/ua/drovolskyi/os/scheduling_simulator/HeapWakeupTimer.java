@@ -0,0 +1,96 @@
+package ua.drovolskyi.os.scheduling_simulator;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/*
+    4-ary min-heap of packed entries in long array.
+    It is lower than binary one (log4 n levels), and 4 children of node are in one or two cache lines.
+    Heap can't be walked in order, so sorted copy of it is kept for forEachInOrder(), it is rebuilt
+    (in the same array) only if processes were added or removed since previous walk
+ */
+public class HeapWakeupTimer implements WakeupTimer {
+    private long[] heap = new long[16];
+    private int size = 0;
+    private long[] sortedEntries = new long[16];
+    private boolean sortedEntriesValid = true;
+
+    @Override
+    public void add(int awakeTime, int processId){
+        if(size == heap.length){
+            heap = Arrays.copyOf(heap, heap.length * 2);
+        }
+        long entry = WakeupTimer.pack(awakeTime, processId);
+        sortedEntriesValid = false;
+        int i = size++;
+        while(i > 0){ // sift up
+            int parent = (i - 1) >>> 2;
+            if(heap[parent] <= entry){
+                break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = entry;
+    }
+
+    @Override
+    public void expire(int now, IntConsumer action){
+        while(size > 0 && WakeupTimer.awakeTimeOf(heap[0]) <= now){
+            int processId = WakeupTimer.processIdOf(heap[0]);
+            removeFirst();
+            action.accept(processId);
+        }
+    }
+
+    private void removeFirst(){
+        sortedEntriesValid = false;
+        long entry = heap[--size];
+        int i = 0;
+        while(true){ // sift down
+            int firstChild = 4 * i + 1;
+            if(firstChild >= size){
+                break;
+            }
+            int minChild = firstChild;
+            int lastChild = Math.min(firstChild + 3, size - 1);
+            for(int child = firstChild + 1; child <= lastChild; child++){
+                if(heap[child] < heap[minChild]){
+                    minChild = child;
+                }
+            }
+            if(entry <= heap[minChild]){
+                break;
+            }
+            heap[i] = heap[minChild];
+            i = minChild;
+        }
+        heap[i] = entry;
+    }
+
+    @Override
+    public int getNextAwakeTime(){
+        return size == 0 ? -1 : WakeupTimer.awakeTimeOf(heap[0]);
+    }
+
+    @Override
+    public void forEachInOrder(EntryConsumer action){
+        if(!sortedEntriesValid){
+            if(sortedEntries.length < size){
+                sortedEntries = new long[heap.length];
+            }
+            System.arraycopy(heap, 0, sortedEntries, 0, size);
+            Arrays.sort(sortedEntries, 0, size);
+            sortedEntriesValid = true;
+        }
+        for(int i = 0; i < size; i++){
+            long entry = sortedEntries[i];
+            action.accept(WakeupTimer.processIdOf(entry), WakeupTimer.awakeTimeOf(entry));
+        }
+    }
+
+    @Override
+    public int size(){
+        return size;
+    }
+}
@@ -0,0 +1,70 @@
+package ua.drovolskyi.os.scheduling_simulator;
+
+import java.util.NoSuchElementException;
+import java.util.function.IntConsumer;
+
+// FIFO queue of int values (ids of processes) in ring buffer, that grows twice when it is full
+public class IntRingQueue {
+    private int[] elements;
+    private int head = 0; // index of first element
+    private int size = 0;
+
+    // capacity must be power of 2
+    public IntRingQueue(int capacity){
+        if(capacity <= 0 || Integer.bitCount(capacity) != 1){
+            throw new IllegalArgumentException("capacity must be power of 2");
+        }
+        elements = new int[capacity];
+    }
+
+    public void add(int value){
+        if(size == elements.length){
+            grow();
+        }
+        elements[(head + size) & (elements.length - 1)] = value;
+        size++;
+    }
+
+    public int poll(){
+        if(size == 0){
+            throw new NoSuchElementException();
+        }
+        int value = elements[head];
+        head = (head + 1) & (elements.length - 1);
+        size--;
+        return value;
+    }
+
+    public int size(){
+        return size;
+    }
+
+    public boolean isEmpty(){
+        return size == 0;
+    }
+
+    public void clear(){
+        head = 0;
+        size = 0;
+    }
+
+    // from first element to last one
+    public void forEach(IntConsumer action){
+        for(int i = 0; i < size; i++){
+            action.accept(elements[(head + i) & (elements.length - 1)]);
+        }
+    }
+
+    // elements are moved to beginning of new array, so they are in order again
+    private void grow(){
+        if(elements.length == 1 << 30){
+            throw new IllegalStateException("Queue is too big");
+        }
+        int[] newElements = new int[elements.length * 2];
+        int firstPartLength = elements.length - head;
+        System.arraycopy(elements, head, newElements, 0, firstPartLength);
+        System.arraycopy(elements, 0, newElements, firstPartLength, head);
+        elements = newElements;
+        head = 0;
+    }
+}
@@ -0,0 +1,167 @@
+package ua.drovolskyi.os.scheduling_simulator;
+
+import java.util.ArrayDeque;
+import java.util.NoSuchElementException;
+import java.util.function.IntConsumer;
+
+/*
+    Queues of ready processes (their ids) for every priority level, like in O(1) scheduler of Linux:
+    every level is FIFO in ring buffer, and bitmap of non-empty levels is kept,
+    so highest non-empty level is found by bit scan, not by checking all levels.
+    Bitmap has two layers: bit of level in levelBits, and bit of its word of levelBits in wordBits,
+    so even for thousands of levels only a couple of words is scanned.
+    Level with greater number has greater priority.
+
+    Queue of level is chain of ring buffers (new processes are added to the last one), so that boost()
+    moves whole levels into other level by moving their buffers, without touching every process.
+    Level, where process is queued, is its priority, so priority of process is updated when it is polled
+ */
+public class MultilevelRunQueue {
+    private static final int INITIAL_LEVEL_CAPACITY = 16;
+
+    private final ArrayDeque<IntRingQueue>[] levels; // chain of buffers of every level, it is never empty
+    private final int[] sizes; // of levels
+    private final ArrayDeque<IntRingQueue> spareBuffers = new ArrayDeque<>(); // empty buffers for reuse
+    private final long[] levelBits; // bit i is set if level i isn't empty
+    private final long[] wordBits; // bit i is set if levelBits[i] != 0
+    private int size = 0;
+
+    public MultilevelRunQueue(int levelsNumber){
+        if(levelsNumber <= 0){
+            throw new IllegalArgumentException("levelsNumber must be > 0");
+        }
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        ArrayDeque<IntRingQueue>[] chains = new ArrayDeque[levelsNumber];
+        levels = chains;
+        sizes = new int[levelsNumber];
+        for(int i = 0; i < levelsNumber; i++){
+            levels[i] = new ArrayDeque<>();
+            levels[i].add(new IntRingQueue(INITIAL_LEVEL_CAPACITY));
+        }
+        levelBits = new long[(levelsNumber + 63) / 64];
+        wordBits = new long[(levelBits.length + 63) / 64];
+    }
+
+    // adds process to the end of queue of level
+    public void add(int level, int processId){
+        if(sizes[level] == 0){
+            setNonEmpty(level);
+        }
+        levels[level].getLast().add(processId);
+        sizes[level]++;
+        size++;
+    }
+
+    // returns -1 if there are no ready processes
+    public int getHighestLevel(){
+        for(int i = wordBits.length - 1; i >= 0; i--){
+            if(wordBits[i] != 0){
+                int word = i * 64 + 63 - Long.numberOfLeadingZeros(wordBits[i]);
+                return word * 64 + 63 - Long.numberOfLeadingZeros(levelBits[word]);
+            }
+        }
+        return -1;
+    }
+
+    // removes first process of level and returns its id
+    public int poll(int level){
+        ArrayDeque<IntRingQueue> chain = levels[level];
+        if(sizes[level] == 0){
+            throw new NoSuchElementException();
+        }
+        // buffers before the last one are never empty
+        int processId = chain.getFirst().poll();
+        if(chain.getFirst().isEmpty() && chain.size() > 1){
+            spareBuffers.add(chain.removeFirst());
+        }
+        sizes[level]--;
+        size--;
+        if(sizes[level] == 0){
+            setEmpty(level);
+        }
+        return processId;
+    }
+
+    // removes first process of highest non-empty level and returns its id
+    public int pollHighest(){
+        int level = getHighestLevel();
+        if(level == -1){
+            throw new NoSuchElementException();
+        }
+        return poll(level);
+    }
+
+    /*
+        Moves processes of all levels lower than targetLevel to the end of queue of targetLevel
+        (level targetLevel - 1 first, then targetLevel - 2, and so on), keeping their order.
+        Takes time proportional to number of levels and not to number of processes
+     */
+    public void boost(int targetLevel){
+        ArrayDeque<IntRingQueue> targetChain = levels[targetLevel];
+        for(int i = targetLevel - 1; i >= 0; i--){
+            if(sizes[i] == 0){
+                continue;
+            }
+            if(sizes[targetLevel] == 0){ // its only buffer is empty, and it would be in the middle of chain
+                spareBuffers.add(targetChain.removeLast());
+                setNonEmpty(targetLevel);
+            }
+            ArrayDeque<IntRingQueue> chain = levels[i];
+            while(!chain.isEmpty()){
+                IntRingQueue buffer = chain.removeFirst();
+                if(buffer.isEmpty()){ // it can be only the last one
+                    spareBuffers.add(buffer);
+                }
+                else{
+                    targetChain.add(buffer);
+                }
+            }
+            chain.add(takeSpareBuffer());
+            sizes[targetLevel] += sizes[i];
+            sizes[i] = 0;
+            setEmpty(i);
+        }
+    }
+
+    private IntRingQueue takeSpareBuffer(){
+        IntRingQueue buffer = spareBuffers.poll();
+        return buffer != null ? buffer : new IntRingQueue(INITIAL_LEVEL_CAPACITY);
+    }
+
+    // ids of processes of level, from first one to last one
+    public void forEach(int level, IntConsumer action){
+        for(IntRingQueue buffer : levels[level]){
+            buffer.forEach(action);
+        }
+    }
+
+    public int size(int level){
+        return sizes[level];
+    }
+
+    public int size(){
+        return size;
+    }
+
+    public boolean isEmpty(){
+        return size == 0;
+    }
+
+    public int getLevelsNumber(){
+        return levels.length;
+    }
+
+    private void setNonEmpty(int level){
+        int word = level >>> 6;
+        levelBits[word] |= 1L << level;
+        wordBits[word >>> 6] |= 1L << word;
+    }
+
+    private void setEmpty(int level){
+        int word = level >>> 6;
+        levelBits[word] &= ~(1L << level);
+        if(levelBits[word] == 0){
+            wordBits[word >>> 6] &= ~(1L << word);
+        }
+    }
+}
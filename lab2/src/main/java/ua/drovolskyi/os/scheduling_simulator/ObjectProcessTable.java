@@ -0,0 +1,119 @@
+package ua.drovolskyi.os.scheduling_simulator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// table of Process objects, every call is passed to process with given id
+public class ObjectProcessTable implements ProcessTable {
+    private final List<Process> processesById = new ArrayList<>(); // null if there is no process with id
+
+    public ObjectProcessTable(){}
+
+    // ids of processes must be unique and >= 0
+    public ObjectProcessTable(List<Process> processes){
+        for(Process p : processes){
+            if(p.getId() < 0){
+                throw new IllegalArgumentException("id of process must be >= 0");
+            }
+            while(processesById.size() <= p.getId()){
+                processesById.add(null);
+            }
+            if(processesById.get(p.getId()) != null){
+                throw new IllegalArgumentException("ids of processes must be unique");
+            }
+            processesById.set(p.getId(), p);
+        }
+    }
+
+    @Override
+    public int add(int requiredTime, int periodBeforeBlocking, int blockingPeriod){
+        int id = processesById.size();
+        processesById.add(new Process(id, requiredTime, periodBeforeBlocking, blockingPeriod));
+        return id;
+    }
+
+    @Override
+    public int size(){
+        return processesById.size();
+    }
+
+    @Override
+    public int execute(int id, int burstDuration){
+        return processesById.get(id).execute(burstDuration);
+    }
+
+    @Override
+    public int getPriority(int id){
+        return processesById.get(id).getPriority();
+    }
+
+    @Override
+    public void setPriority(int id, int priority){
+        processesById.get(id).setPriority(priority);
+    }
+
+    @Override
+    public int getAwakeTime(int id){
+        return processesById.get(id).getAwakeTime();
+    }
+
+    @Override
+    public void setAwakeTime(int id, int awakeTime){
+        processesById.get(id).setAwakeTime(awakeTime);
+    }
+
+    @Override
+    public Process.State getState(int id){
+        return processesById.get(id).getState();
+    }
+
+    @Override
+    public void setState(int id, Process.State state){
+        processesById.get(id).setState(state);
+    }
+
+    @Override
+    public boolean isDone(int id){
+        return processesById.get(id).isDone();
+    }
+
+    @Override
+    public boolean isBlocked(int id){
+        return processesById.get(id).isBlocked();
+    }
+
+    @Override
+    public int getRequiredTime(int id){
+        return processesById.get(id).getRequiredTime();
+    }
+
+    @Override
+    public int getUsedTime(int id){
+        return processesById.get(id).getUsedTime();
+    }
+
+    @Override
+    public int getPeriodBeforeBlocking(int id){
+        return processesById.get(id).getPeriodBeforeBlocking();
+    }
+
+    @Override
+    public int getUsedTimeBeforeBlocking(int id){
+        return processesById.get(id).getUsedTimeBeforeBlocking();
+    }
+
+    @Override
+    public void resetUsedTimeBeforeBlocking(int id){
+        processesById.get(id).resetUsedTimeBeforeBlocking();
+    }
+
+    @Override
+    public int getBlockingPeriod(int id){
+        return processesById.get(id).getBlockingPeriod();
+    }
+
+    @Override
+    public int getBlockingsCount(int id){
+        return processesById.get(id).getBlockingsCount();
+    }
+}
@@ -49,33 +49,44 @@ public class Process {
         this.awakeTime = awakeTime;
     }
 
-    // burstDuration bust be > 0
+    // burstDuration bust be > 0 (if it is <= 0, process runs until it is finished or blocked)
     // we go there on the beginning of current millisecond
+    // returns used time of burst; it is computed at once, instead of going through burst millisecond by millisecond
     public int execute(int burstDuration){
-        int usedBurstTime = 0;
-
-        state = State.RUNNING;
-        while(true){
-            // this line is for business process really should do
+        int remainingTime = requiredTime - usedTime;
+        int remainingTimeBeforeBlocking = periodBeforeBlocking - usedTimeBeforeBlocking;
+        int usedBurstTime = computeUsedBurstTime(remainingTime, remainingTimeBeforeBlocking, burstDuration);
+
+        usedTimeBeforeBlocking += usedBurstTime;
+        usedTime += usedBurstTime;
+        state = computeStateAfterBurst(remainingTime, remainingTimeBeforeBlocking, usedBurstTime);
+        if(state == State.BLOCKED){ // awakeTime is set by scheduler
+            blockingsCount++;
+        }
+        return usedBurstTime;
+    }
 
-            usedBurstTime++;
-            usedTimeBeforeBlocking++;
-            usedTime++;
+    /*
+        Burst computations, that are shared with ArrayProcessTable (it keeps fields of processes in arrays).
+        Process stops at first of moments: it is finished, it needs I/O, burst is elapsed
+     */
+    static int computeUsedBurstTime(int remainingTime, int remainingTimeBeforeBlocking, int burstDuration){
+        int usedBurstTime = Math.min(remainingTime, remainingTimeBeforeBlocking);
+        if(burstDuration > 0){
+            usedBurstTime = Math.min(usedBurstTime, burstDuration);
+        }
+        return usedBurstTime;
+    }
 
-            if(usedTime == requiredTime){ // process is finished
-                return usedBurstTime;
-            }
-            if(usedTimeBeforeBlocking == periodBeforeBlocking){ // process need I/O
-                state = State.BLOCKED;
-                blockingsCount++;
-                return usedBurstTime;
-                // awakeTime is set by scheduler
-            }
-            if(usedBurstTime == burstDuration){ // burst is elapsed
-                state = State.READY;
-                return usedBurstTime;
-            }
+    // finished process stays RUNNING, as it has always been
+    static State computeStateAfterBurst(int remainingTime, int remainingTimeBeforeBlocking, int usedBurstTime){
+        if(usedBurstTime == remainingTime){ // process is finished
+            return State.RUNNING;
+        }
+        if(usedBurstTime == remainingTimeBeforeBlocking){ // process need I/O
+            return State.BLOCKED;
         }
+        return State.READY; // burst is elapsed
     }
 
     public boolean isDone(){
@@ -0,0 +1,61 @@
+package ua.drovolskyi.os.scheduling_simulator;
+
+/*
+    Processes, that are addressed by their ids, for SchedulingAlgorithm.
+    ObjectProcessTable keeps Process objects, ArrayProcessTable keeps fields of all processes
+    in primitive arrays (for simulations with millions of processes)
+ */
+public interface ProcessTable {
+
+    // creates process with id size() (process is ready, its priority is 0) and returns its id
+    int add(int requiredTime, int periodBeforeBlocking, int blockingPeriod);
+
+    // ids of processes are in [0, size())
+    int size();
+
+    // gives burst to process, see Process.execute()
+    int execute(int id, int burstDuration);
+
+    int getPriority(int id);
+
+    void setPriority(int id, int priority);
+
+    int getAwakeTime(int id);
+
+    void setAwakeTime(int id, int awakeTime);
+
+    Process.State getState(int id);
+
+    void setState(int id, Process.State state);
+
+    boolean isDone(int id);
+
+    boolean isBlocked(int id);
+
+    int getRequiredTime(int id);
+
+    int getUsedTime(int id);
+
+    int getPeriodBeforeBlocking(int id);
+
+    int getUsedTimeBeforeBlocking(int id);
+
+    void resetUsedTimeBeforeBlocking(int id);
+
+    int getBlockingPeriod(int id);
+
+    int getBlockingsCount(int id);
+
+    // "objects" - ObjectProcessTable, "arrays" - ArrayProcessTable,
+    // for which memory for initialCapacity processes is allocated at once
+    static ProcessTable create(String type, int initialCapacity){
+        switch (type){
+            case "objects":
+                return new ObjectProcessTable();
+            case "arrays":
+                return new ArrayProcessTable(initialCapacity);
+            default:
+                throw new IllegalArgumentException("process_table must be objects or arrays");
+        }
+    }
+}
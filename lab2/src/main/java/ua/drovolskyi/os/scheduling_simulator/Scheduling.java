@@ -20,10 +20,15 @@ public class Scheduling {
     private static int quantumDuration = 25;
     private static int maxRuntime = 1000;
     private static int processIdCount = 0;
-    private static List<Process> processes = new LinkedList<>();
+    private static String processTableType = "objects";
+    private static ProcessTable processes = null; // it is created, when whole config is read
     private static String resultsFilePath = "summary-results.txt";
+    private static String wakeupTimerType = "wheel";
 
     private static void initialize(String inputFilePath) {
+        // processes from config, {required time, period before blocking, blocking period};
+        // they are added to table after config is read, because type and size of table can be given after them
+        List<int[]> configuredProcesses = new ArrayList<>();
         Scanner scanner = null;
         try {
             scanner = new Scanner(new File(inputFilePath));
@@ -71,6 +76,17 @@ public class Scheduling {
                         }
                         break;
 
+                    case "process_table":
+                        processTableType = scanner.next(); // it is checked, when table is created
+                        break;
+
+                    case "wakeup_timer":
+                        wakeupTimerType = scanner.next();
+                        if(!wakeupTimerType.equals("wheel") && !wakeupTimerType.equals("heap")){
+                            throw new IllegalArgumentException("wakeup_timer must be wheel or heap");
+                        }
+                        break;
+
                     case "process":{
                         double X = Common.R1();
                         while (X == -1.0) {
@@ -78,8 +94,7 @@ public class Scheduling {
                         }
                         X *= runtimeStandardDeviation;
                         int requiredRuntime = (int) X + runtimeAverage;
-                        processes.add(new Process(processIdCount, requiredRuntime, scanner.nextInt(), scanner.nextInt()));
-                        processIdCount++;
+                        configuredProcesses.add(new int[]{requiredRuntime, scanner.nextInt(), scanner.nextInt()});
                         break;
                     }
                     default:
@@ -94,6 +109,13 @@ public class Scheduling {
             }
         }
 
+        // ids of processes in table are the same as values of processIdCount
+        processes = ProcessTable.create(processTableType, Math.max(numberOfProcesses, configuredProcesses.size()));
+        for(int[] process : configuredProcesses){
+            processes.add(process[0], process[1], process[2]);
+            processIdCount++;
+        }
+
         // if user not specified some processes, generate random processes
         while (processes.size() < numberOfProcesses) {
             double X = Common.R1();
@@ -102,8 +124,7 @@ public class Scheduling {
             }
             X *= runtimeStandardDeviation;
             int requiredRuntime = (int) X + runtimeAverage;
-            processes.add(new Process(processIdCount, requiredRuntime,
-                    processIdCount*100 + 1, processIdCount*10));
+            processes.add(requiredRuntime, processIdCount*100 + 1, processIdCount*10);
             processIdCount++;
         }
     }
@@ -115,10 +136,12 @@ public class Scheduling {
         System.out.println("quantum_duration " + quantumDuration);
         System.out.println("runtime_average " + runtimeAverage);
         System.out.println("runtime_std_deviation: " + runtimeStandardDeviation);
+        System.out.println("wakeup_timer " + wakeupTimerType);
+        System.out.println("process_table " + processTableType);
 
-        for(Process p : processes){
-            System.out.println("Process " + p.getId() + "  ( " + p.getRequiredTime() + " ms, " +
-            p.getPeriodBeforeBlocking() + " ms, " + p.getBlockingPeriod() + " )");
+        for(int id = 0; id < processes.size(); id++){
+            System.out.println("Process " + id + "  ( " + processes.getRequiredTime(id) + " ms, " +
+            processes.getPeriodBeforeBlocking(id) + " ms, " + processes.getBlockingPeriod(id) + " )");
         }
     }
 
@@ -146,7 +169,8 @@ public class Scheduling {
         SchedulingAlgorithm algorithm = new SchedulingAlgorithm(
                 maxRuntime, resetPrioritiesPeriod, quantumDuration,
                 "summary-processes.txt",
-                "debug-processes.txt");
+                "debug-processes.txt",
+                WakeupTimer.create(wakeupTimerType));
 
         Result result = null;
         try {
@@ -167,13 +191,13 @@ public class Scheduling {
             out.println("requiredRuntime standard deviation: " + runtimeStandardDeviation);
             out.println("Process ID |\tRequired CPU time |\tUsed CPU time |\tis done |\tPeriod before IO Blocking |\tBlocking count");
 
-            for (Process p : processes) {
+            for (int id = 0; id < processes.size(); id++) {
                 out.println(
-                        p.getId() + "\t\t\t\t" +
-                        p.getRequiredTime() + " ms \t\t\t\t" +
-                        p.getUsedTime() + " ms \t\t\t" + p.isDone() + " \t\t" +
-                        p.getPeriodBeforeBlocking() + " ms \t\t" +
-                        p.getBlockingsCount() + " times"
+                        id + "\t\t\t\t" +
+                        processes.getRequiredTime(id) + " ms \t\t\t\t" +
+                        processes.getUsedTime(id) + " ms \t\t\t" + processes.isDone(id) + " \t\t" +
+                        processes.getPeriodBeforeBlocking(id) + " ms \t\t" +
+                        processes.getBlockingsCount(id) + " times"
                 );
             }
             out.close();
@@ -4,6 +4,7 @@
 
 package ua.drovolskyi.os.scheduling_simulator;
 import java.util.*;
+import java.util.stream.IntStream;
 import java.io.*;
 
 
@@ -12,8 +13,9 @@ public class SchedulingAlgorithm {
     private final String type = "Interactive (preemptive)";
     private final String name = "Multiple queues (Round-robin in each queue)";
 
-    private final List<List<Process>> readyProcesses;
-    private final TreeSet<Process> blockedProcesses;
+    private final MultilevelRunQueue readyProcesses; // ids of processes
+    private ProcessTable processes;
+    private final WakeupTimer blockedProcesses; // ids of processes
     private int doneProcesses = 0;
 
     // current running millisecond
@@ -31,34 +33,50 @@ public class SchedulingAlgorithm {
 
     public SchedulingAlgorithm(int maxRuntime, int resetPrioritiesPeriod, int quantumDuration,
                                String resultFilePath, String statesFilePath){
+        this(maxRuntime, resetPrioritiesPeriod, quantumDuration, resultFilePath, statesFilePath,
+                WakeupTimer.create("wheel"));
+    }
+
+    // blockedProcesses is structure, where blocked processes wait for their awake time
+    public SchedulingAlgorithm(int maxRuntime, int resetPrioritiesPeriod, int quantumDuration,
+                               String resultFilePath, String statesFilePath, WakeupTimer blockedProcesses){
         this.maxRuntime = maxRuntime;
         this.quantumDuration = quantumDuration;
         this.resetPrioritiesPeriod = resetPrioritiesPeriod;
         this.nextResetPrioritiesTime = resetPrioritiesPeriod;
         doneProcesses = 0;
-        readyProcesses = new ArrayList<>(numberOfQuantumsForPriority.length);
-        for(int i = 0; i < numberOfQuantumsForPriority.length; i++){
-            readyProcesses.add(new LinkedList<>());
-        }
-        blockedProcesses = new TreeSet<>(new Process.ComparatorByAwakeTime());
+        readyProcesses = new MultilevelRunQueue(numberOfQuantumsForPriority.length);
+        this.blockedProcesses = blockedProcesses;
 
         this.resultFilePath = resultFilePath;
         this.statesFilePath = statesFilePath;
     }
 
     public Result run(List<Process> initialReadyProcesses) throws FileNotFoundException {
+        // queues keep ids of processes, so process is found by its id in table
+        return run(new ObjectProcessTable(initialReadyProcesses),
+                initialReadyProcesses.stream().mapToInt(Process::getId));
+    }
+
+    // all processes of table are ready initially, they are queued in order of their ids
+    public Result run(ProcessTable initialReadyProcesses) throws FileNotFoundException {
+        return run(initialReadyProcesses, IntStream.range(0, initialReadyProcesses.size()));
+    }
+
+    private Result run(ProcessTable processes, IntStream initialReadyIds) throws FileNotFoundException {
         // init output streams
         PrintStream resultsOut = new PrintStream(new FileOutputStream(resultFilePath));
         PrintStream statesOut = new PrintStream(new FileOutputStream(statesFilePath));
 
         // add initial processes to queue
-        for(Process p : initialReadyProcesses){
-            p.setPriority(maxPriority);
-        }
-        readyProcesses.get(maxPriority).addAll(initialReadyProcesses);
+        this.processes = processes;
+        initialReadyIds.forEach(id -> {
+            processes.setPriority(id, maxPriority);
+            readyProcesses.add(maxPriority, id);
+        });
 
 
-        Process currentProcess = null;
+        int currentProcess = -1; // id
         while(runtime < maxRuntime){
             // awake blocked processes
             awakeBlockedProcesses();
@@ -82,10 +100,10 @@ public class SchedulingAlgorithm {
                     break;
                 }
                 else{
-                    if(blockedProcesses.first().getAwakeTime() < maxRuntime){
+                    if(blockedProcesses.getNextAwakeTime() < maxRuntime){
                         resultsOut.println("No ready processes, waiting for blocked processes...\n");
                         statesOut.println("No ready processes, waiting for blocked processes...\n");
-                        runtime = blockedProcesses.first().getAwakeTime();
+                        runtime = blockedProcesses.getNextAwakeTime();
                         continue;
                     }
                     else{
@@ -105,7 +123,7 @@ public class SchedulingAlgorithm {
                 - time remaining for end of work (when maxRuntime is used),
                 - time remaining for next reset of priority
              */
-            int numberOfQuantums = numberOfQuantumsForPriority[currentProcess.getPriority()];
+            int numberOfQuantums = numberOfQuantumsForPriority[processes.getPriority(currentProcess)];
             int burstDuration = numberOfQuantums * quantumDuration;
             burstDuration = Math.min(burstDuration, maxRuntime - runtime);
             burstDuration = Math.min(burstDuration, nextResetPrioritiesTime - runtime);
@@ -114,111 +132,109 @@ public class SchedulingAlgorithm {
             printProcessPicked(currentProcess, statesOut, burstDuration);
 
             // give process a burst
-            runtime += currentProcess.execute(burstDuration);
-            if(currentProcess.isDone()){
+            runtime += processes.execute(currentProcess, burstDuration);
+            if(processes.isDone(currentProcess)){
                 doneProcesses++;
                 printProcessDone(currentProcess, resultsOut);
                 printProcessDone(currentProcess, statesOut);
-            } else if(currentProcess.isBlocked()){
-                int awakeTime = runtime + currentProcess.getBlockingPeriod();
-                currentProcess.setAwakeTime(awakeTime);
-                blockedProcesses.add(currentProcess);
+            } else if(processes.isBlocked(currentProcess)){
+                int awakeTime = runtime + processes.getBlockingPeriod(currentProcess);
+                processes.setAwakeTime(currentProcess, awakeTime);
+                blockedProcesses.add(awakeTime, currentProcess);
                 printProcessBlocked(currentProcess, resultsOut);
                 printProcessBlocked(currentProcess, statesOut);
-                currentProcess.resetUsedTimeBeforeBlocking();
+                processes.resetUsedTimeBeforeBlocking(currentProcess);
             } else{ // reduce priority of currentProcess
-                int currentPriority = currentProcess.getPriority();
+                int currentPriority = processes.getPriority(currentProcess);
                 int nextPriority = Math.max(currentPriority - 1, 0);
-                currentProcess.setPriority(nextPriority);
-                readyProcesses.get(nextPriority).add(currentProcess);
+                processes.setPriority(currentProcess, nextPriority);
+                readyProcesses.add(nextPriority, currentProcess);
                 printProcessUsedBurst(currentProcess, resultsOut);
                 printProcessUsedBurst(currentProcess, statesOut);
             }
-            currentProcess = null;
+            currentProcess = -1;
         }
         if(runtime == maxRuntime){ // exit because runtime == maxRuntime
             resultsOut.println("System finished, because max time is used");
             statesOut.println("System finished, because max time is used");
         }
 
+        updatePrioritiesOfReadyProcesses();
+
         resultsOut.close();
         statesOut.close();
 
         return new Result(this.type, this.name, this.runtime, this.doneProcesses);
     }
 
-    // add unblocked processes to queue of ready processes
+    // add unblocked processes to queue of ready processes (all processes with awakeTime <= runtime at once)
     private void awakeBlockedProcesses(){
-        while(!blockedProcesses.isEmpty()){
-            Process p = blockedProcesses.first();
-            if(runtime >= p.getAwakeTime()){
-                blockedProcesses.remove(p);
-                p.setAwakeTime(-1);
-                p.setState(Process.State.READY);
-                readyProcesses.get(p.getPriority()).add(p);
-            }
-            else{
-                break;
-            }
-        }
+        blockedProcesses.expire(runtime, id -> {
+            processes.setAwakeTime(id, -1);
+            processes.setState(id, Process.State.READY);
+            readyProcesses.add(processes.getPriority(id), id);
+        });
     }
 
-    // set priorities of all ready processes to maxPriority and move them into max priority queue
+    /*
+        Set priorities of all ready processes to maxPriority and move them into max priority queue.
+        Lower queues are moved as whole, and priority of process is set when it is picked
+        (its priority is level of queue, where it was), so it doesn't depend on number of processes
+     */
     private void resetPriorities(){
-        List<Process> maxPriorityQueue = readyProcesses.get(maxPriority);
-        for(int i = maxPriority - 1; i >= 0; i--){
-            Iterator<Process> queueIterator = readyProcesses.get(i).iterator();
-            while(queueIterator.hasNext()){
-                Process p = queueIterator.next();
-                p.setPriority(maxPriority);
-                queueIterator.remove();
-                maxPriorityQueue.add(p);
-            }
-        }
+        readyProcesses.boost(maxPriority);
         nextResetPrioritiesTime = runtime + resetPrioritiesPeriod;
     }
 
-    // choose next process and remove it from queue
-    private Process chooseNextProcess(){
+    // choose next process and remove it from queue (highest non-empty level is found by bitmap)
+    private int chooseNextProcess(){
+        int priority = readyProcesses.getHighestLevel();
+        if(priority == -1){
+            throw new NoSuchElementException();
+        }
+        int id = readyProcesses.poll(priority);
+        processes.setPriority(id, priority);
+        return id;
+    }
+
+    // set priorities of processes, that are still in queues, when simulation is finished
+    private void updatePrioritiesOfReadyProcesses(){
         for(int i = maxPriority; i >= 0; i--){
-            List<Process> queue = readyProcesses.get(i);
-            if(!queue.isEmpty()){
-                return queue.remove(0);
-            }
+            int priority = i;
+            readyProcesses.forEach(i, id -> processes.setPriority(id, priority));
         }
-        throw new NoSuchElementException();
     }
 
-    private void printProcessPicked(Process p, PrintStream out, int burstDuration){
-        out.print(runtime + " ms, Process " + p.getId() + " picked by scheduler, " +
+    private void printProcessPicked(int id, PrintStream out, int burstDuration){
+        out.print(runtime + " ms, Process " + id + " picked by scheduler, " +
                 "burst: "+ burstDuration + " ms ");
-        printProcessInfo(p,out);
+        printProcessInfo(id,out);
     }
 
-    private void printProcessDone(Process p, PrintStream out){
-        out.print(runtime + " ms, Process " + p.getId() + " is done ");
-        printProcessInfo(p,out);
+    private void printProcessDone(int id, PrintStream out){
+        out.print(runtime + " ms, Process " + id + " is done ");
+        printProcessInfo(id,out);
         out.println("\n");
     }
 
-    private void printProcessUsedBurst(Process p, PrintStream out){
-        out.print(runtime + " ms, Process " + p.getId() + " used burst ");
-        printProcessInfo(p,out);
+    private void printProcessUsedBurst(int id, PrintStream out){
+        out.print(runtime + " ms, Process " + id + " used burst ");
+        printProcessInfo(id,out);
         out.println("\n");
     }
 
-    private void printProcessBlocked(Process p, PrintStream out){
-        out.print(runtime + " ms, Process " + p.getId() + " I/O blocked ");
-        printProcessInfo(p,out);
+    private void printProcessBlocked(int id, PrintStream out){
+        out.print(runtime + " ms, Process " + id + " I/O blocked ");
+        printProcessInfo(id,out);
         out.println("\n");
     }
 
-    private void printProcessInfo(Process p, PrintStream out){
-        out.println("( priority: " + p.getPriority() +
-                ", used " + p.getUsedTime() + " ms of " + p.getRequiredTime() + " ms, " +
-                "blocked " + p.getBlockingsCount() + " times, " +
-                "used before blocking: " + p.getUsedTimeBeforeBlocking() + " ms of " +
-                p.getPeriodBeforeBlocking() + " ms )");
+    private void printProcessInfo(int id, PrintStream out){
+        out.println("( priority: " + processes.getPriority(id) +
+                ", used " + processes.getUsedTime(id) + " ms of " + processes.getRequiredTime(id) + " ms, " +
+                "blocked " + processes.getBlockingsCount(id) + " times, " +
+                "used before blocking: " + processes.getUsedTimeBeforeBlocking(id) + " ms of " +
+                processes.getPeriodBeforeBlocking(id) + " ms )");
     }
 
     public void printState(PrintStream out){
@@ -226,19 +242,14 @@ public class SchedulingAlgorithm {
         out.println("Queues:");
         for(int i = maxPriority; i >= 0; i--){
             out.print("Priority " + i + ": ");
-            List<Process> queue = readyProcesses.get(i);
-            for(int j = 0; j < queue.size(); j++){
-                out.print(queue.get(j).getId() + " ");
-            }
+            readyProcesses.forEach(i, id -> out.print(id + " "));
             out.println();
         }
         out.print("\nBlocked processes: ");
         if(blockedProcesses.isEmpty()){
             out.print("[no processes]");
         }
-        for(Process p : blockedProcesses){
-            out.print(p.getId() + "("+p.getAwakeTime()+"ms)  ");
-        }
+        blockedProcesses.forEachInOrder((id, awakeTime) -> out.print(id + "("+awakeTime+"ms)  "));
         out.println("\n");
     }
 }
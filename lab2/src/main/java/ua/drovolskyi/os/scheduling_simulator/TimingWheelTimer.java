@@ -0,0 +1,150 @@
+package ua.drovolskyi.os.scheduling_simulator;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/*
+    Hierarchical timing wheel: LEVELS wheels of 64 slots, slot of wheel L covers 64^L milliseconds.
+    Process is put into wheel, where its awake time first differs from current time of timer
+    (comparing 6-bit digits from the highest one), and into slot by its digit there. So adding is O(1),
+    and processes of lower wheel always must be awaken before processes of higher one.
+    When time reaches slot of higher wheel, processes of slot are moved to lower wheels (cascade);
+    every process is moved at most LEVELS - 1 times. Slots of wheel 0 hold processes with one awake time,
+    so all of them are awaken at once (sorted by id).
+    Non-empty slots of every wheel are marked in bitmap, so empty slots aren't visited, and long periods
+    without processes to awake are skipped at once.
+    Slots are in time order too (lower wheels first, then by slot), so processes are walked in order
+    by sorting entries inside slots only, and only slots, that are changed since previous walk
+ */
+public class TimingWheelTimer implements WakeupTimer {
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS; // per wheel
+    private static final int LEVELS = 6; // 6 * 6 bits cover all non-negative int times
+
+    private final long[][] slots = new long[LEVELS * SLOTS][]; // packed entries
+    private final int[] slotSizes = new int[LEVELS * SLOTS];
+    private final long[] nonEmptySlots = new long[LEVELS]; // bitmap of every wheel
+    private final boolean[] sortedSlots = new boolean[LEVELS * SLOTS]; // entries of slot are sorted
+    private int currentTime = 0; // it is never greater than awake time of any process
+    private int size = 0;
+
+    @Override
+    public void add(int awakeTime, int processId){
+        if(awakeTime < currentTime){
+            throw new IllegalArgumentException("awakeTime must be >= current time of timer");
+        }
+        put(WakeupTimer.pack(awakeTime, processId));
+        size++;
+    }
+
+    private void put(long entry){
+        int awakeTime = WakeupTimer.awakeTimeOf(entry);
+        int differentBits = awakeTime ^ currentTime;
+        int level = differentBits == 0 ? 0 : (31 - Integer.numberOfLeadingZeros(differentBits)) / SLOT_BITS;
+        int slot = (awakeTime >>> (level * SLOT_BITS)) & (SLOTS - 1);
+        int index = level * SLOTS + slot;
+
+        if(slots[index] == null){
+            slots[index] = new long[4];
+        }
+        else if(slotSizes[index] == slots[index].length){
+            slots[index] = Arrays.copyOf(slots[index], slots[index].length * 2);
+        }
+        slots[index][slotSizes[index]++] = entry;
+        sortedSlots[index] = false;
+        nonEmptySlots[level] |= 1L << slot;
+    }
+
+    @Override
+    public void expire(int now, IntConsumer action){
+        while(size > 0){
+            int level = getLowestNonEmptyLevel();
+            int slot = Long.numberOfTrailingZeros(nonEmptySlots[level]);
+            int slotStartTime = getSlotStartTime(level, slot);
+            if(slotStartTime > now){ // all processes must be awaken later
+                return;
+            }
+
+            int index = level * SLOTS + slot;
+            long[] entries = slots[index];
+            int entriesNumber = slotSizes[index];
+            slotSizes[index] = 0;
+            nonEmptySlots[level] &= ~(1L << slot);
+            currentTime = slotStartTime;
+
+            if(level == 0){ // all processes of slot have the same awake time
+                Arrays.sort(entries, 0, entriesNumber);
+                size -= entriesNumber;
+                for(int i = 0; i < entriesNumber; i++){
+                    action.accept(WakeupTimer.processIdOf(entries[i]));
+                }
+            }
+            else{ // move processes to lower wheels (entries of slot are put to other slots only)
+                for(int i = 0; i < entriesNumber; i++){
+                    put(entries[i]);
+                }
+            }
+        }
+        currentTime = now; // timer is empty
+    }
+
+    // wheel 0 is never empty if timer isn't empty and wheels above it are empty
+    private int getLowestNonEmptyLevel(){
+        for(int level = 0; level < LEVELS; level++){
+            if(nonEmptySlots[level] != 0){
+                return level;
+            }
+        }
+        throw new IllegalStateException("Timer is empty");
+    }
+
+    // the earliest time, that can be in slot: higher digits are from current time, lower ones are 0
+    private int getSlotStartTime(int level, int slot){
+        int shift = level * SLOT_BITS;
+        long higherDigits = (long)currentTime >>> (shift + SLOT_BITS) << (shift + SLOT_BITS);
+        return (int)(higherDigits | ((long)slot << shift));
+    }
+
+    @Override
+    public int getNextAwakeTime(){
+        if(size == 0){
+            return -1;
+        }
+        int level = getLowestNonEmptyLevel();
+        int slot = Long.numberOfTrailingZeros(nonEmptySlots[level]);
+        if(level == 0){
+            return getSlotStartTime(0, slot);
+        }
+        int index = level * SLOTS + slot;
+        long min = Long.MAX_VALUE;
+        for(int i = 0; i < slotSizes[index]; i++){
+            min = Math.min(min, slots[index][i]);
+        }
+        return WakeupTimer.awakeTimeOf(min);
+    }
+
+    // order of entries inside slot doesn't matter for expire(), so they are sorted in place
+    @Override
+    public void forEachInOrder(EntryConsumer action){
+        for(int level = 0; level < LEVELS; level++){
+            long bits = nonEmptySlots[level];
+            while(bits != 0){
+                int index = level * SLOTS + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                if(!sortedSlots[index]){
+                    Arrays.sort(slots[index], 0, slotSizes[index]);
+                    sortedSlots[index] = true;
+                }
+                for(int i = 0; i < slotSizes[index]; i++){
+                    long entry = slots[index][i];
+                    action.accept(WakeupTimer.processIdOf(entry), WakeupTimer.awakeTimeOf(entry));
+                }
+            }
+        }
+    }
+
+    @Override
+    public int size(){
+        return size;
+    }
+}
@@ -0,0 +1,57 @@
+package ua.drovolskyi.os.scheduling_simulator;
+
+import java.util.function.IntConsumer;
+
+/*
+    Blocked processes (their ids), ordered by awake time, then by id
+    (the same order, that Process.ComparatorByAwakeTime gives).
+    Awake time and id are packed into one long, so nothing is allocated per process
+ */
+public interface WakeupTimer {
+
+    // awakeTime must be >= time of last expire() call
+    void add(int awakeTime, int processId);
+
+    // passes ids of processes, that must be awaken by time now, to action (in order) and removes them
+    void expire(int now, IntConsumer action);
+
+    // awake time of first process, or -1 if there are no processes
+    int getNextAwakeTime();
+
+    // passes all processes to action in order, without removing them
+    void forEachInOrder(EntryConsumer action);
+
+    int size();
+
+    default boolean isEmpty(){
+        return size() == 0;
+    }
+
+    interface EntryConsumer {
+        void accept(int processId, int awakeTime);
+    }
+
+    static long pack(int awakeTime, int processId){
+        return ((long)awakeTime << 32) | processId;
+    }
+
+    static int awakeTimeOf(long entry){
+        return (int)(entry >>> 32);
+    }
+
+    static int processIdOf(long entry){
+        return (int)entry;
+    }
+
+    // "wheel" - hierarchical timing wheel, "heap" - 4-ary heap
+    static WakeupTimer create(String type){
+        switch (type){
+            case "wheel":
+                return new TimingWheelTimer();
+            case "heap":
+                return new HeapWakeupTimer();
+            default:
+                throw new IllegalArgumentException("wakeup_timer must be wheel or heap");
+        }
+    }
+}